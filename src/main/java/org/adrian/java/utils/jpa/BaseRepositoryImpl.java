@@ -0,0 +1,572 @@
+package org.adrian.java.utils.jpa;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import javax.persistence.EntityManager;
+import javax.persistence.Tuple;
+import javax.persistence.TypedQuery;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaDelete;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.CriteriaUpdate;
+import javax.persistence.criteria.Path;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+import javax.persistence.criteria.Selection;
+
+import org.adrian.java.utils.jpa.PredicateUtils.ComparatorKeyword;
+import org.adrian.java.utils.transform.GenericTransformer;
+import org.hibernate.FlushMode;
+import org.hibernate.Session;
+import org.hibernate.jpa.QueryHints;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+import org.springframework.data.jpa.repository.support.JpaEntityInformation;
+import org.springframework.data.jpa.repository.support.SimpleJpaRepository;
+import org.springframework.data.repository.support.PageableExecutionUtils;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Base class of the {@link BaseRepository} implementations, to be declared with
+ * {@literal @EnableJpaRepositories(repositoryBaseClass = BaseRepositoryImpl.class)}.
+ * <p>
+ * Binds the parameters of the specifications created by {@link CompiledFilter#bindParameter(Comparable)}
+ * and {@link SpecificationUtils#toParameterSpecification(String, Comparable, PredicateUtils.ComparatorKeyword)},
+ * implements the methods of {@link ExtendedRepository}, and invalidates its caches on the writes through this repository.
+ *
+ * @param <E> the entity type
+ */
+public class BaseRepositoryImpl<E> extends SimpleJpaRepository<E, Long> implements ExtendedRepository<E> {
+
+	/**
+	 * Maximum number of counts kept by {@link #findAll(Specification, Pageable, Object, Duration)}.
+	 */
+	static final int MAX_CACHED_COUNTS = 1000;
+
+	private final JpaEntityInformation<E, ?> entityInformation;
+	private final EntityManager entityManager;
+	private final Map<Object, CachedCount> counts = new ConcurrentHashMap<>();
+	private final QueryCache queryCache = new QueryCache(DEFAULT_QUERY_CACHE_SIZE);
+	private final EntityCache<E> entityCache;
+
+	public BaseRepositoryImpl(JpaEntityInformation<E, ?> entityInformation, EntityManager entityManager) {
+		super(entityInformation, entityManager);
+		this.entityInformation = entityInformation;
+		this.entityManager = entityManager;
+		this.entityCache = new EntityCache<>(DEFAULT_ENTITY_CACHE_SIZE, PredicateUtils.DEFAULT_MAX_IN_LIST_SIZE, this::getId);
+	}
+
+	private Long getId(E entity) {
+		return (Long) entityInformation.getId(entity);
+	}
+
+	@Override
+	public Slice<E> findSlice(Specification<E> spec, Pageable pageable) {
+		Objects.requireNonNull(pageable, "pageable == null");
+		TypedQuery<E> query = getQuery(spec, pageable.getSort());
+		if (pageable.isUnpaged()) {
+			return new SliceImpl<>(query.getResultList());
+		}
+		query.setFirstResult((int) pageable.getOffset());
+		query.setMaxResults(pageable.getPageSize() + 1);
+		List<E> content = query.getResultList();
+		boolean hasNext = content.size() > pageable.getPageSize();
+		return new SliceImpl<>(hasNext ? content.subList(0, pageable.getPageSize()) : content, pageable, hasNext);
+	}
+
+	@Override
+	public Page<E> findAll(Specification<E> spec, Pageable pageable, Object countKey, Duration countTtl) {
+		Objects.requireNonNull(pageable, "pageable == null");
+		Objects.requireNonNull(countKey, "countKey == null");
+		Objects.requireNonNull(countTtl, "countTtl == null");
+		TypedQuery<E> query = getQuery(spec, pageable);
+		if (pageable.isUnpaged()) {
+			return new PageImpl<>(query.getResultList());
+		}
+		query.setFirstResult((int) pageable.getOffset());
+		query.setMaxResults(pageable.getPageSize());
+		return PageableExecutionUtils.getPage(query.getResultList(), pageable, () -> count(spec, countKey, countTtl));
+	}
+
+	@Override
+	public Page<E> findAllCached(CacheableSpecification<E> spec, Pageable pageable, Duration ttl) {
+		Objects.requireNonNull(spec, "spec == null");
+		Objects.requireNonNull(pageable, "pageable == null");
+		Objects.requireNonNull(ttl, "ttl == null");
+		return queryCache.get(Arrays.asList(spec, pageable), ttl, () -> readDetached(em -> {
+			TypedQuery<E> query = getEntityQuery(em, spec, pageable.getSort());
+			if (pageable.isUnpaged()) {
+				return new PageImpl<>(query.getResultList());
+			}
+			query.setFirstResult((int) pageable.getOffset());
+			query.setMaxResults(pageable.getPageSize());
+			return PageableExecutionUtils.getPage(query.getResultList(), pageable, () -> count(em, spec));
+		}));
+	}
+
+	@Override
+	public List<E> findAllCached(CacheableSpecification<E> spec, Sort sort, Duration ttl) {
+		Objects.requireNonNull(spec, "spec == null");
+		Objects.requireNonNull(sort, "sort == null");
+		Objects.requireNonNull(ttl, "ttl == null");
+		return queryCache.get(Arrays.asList(spec, sort), ttl,
+				() -> readDetached(em -> Collections.unmodifiableList(getEntityQuery(em, spec, sort).getResultList())));
+	}
+
+	@Override
+	public void setQueryCacheSize(int maxSize) {
+		queryCache.setMaxSize(maxSize);
+	}
+
+	/**
+	 * Reads in a new read-only persistence context, closed afterwards, so the read entities are detached and can be
+	 * shared between threads, while the entities of the caller are neither returned nor detached.
+	 * Within a transaction the new session shares the connection of the caller's session, so no other connection is taken
+	 * from the pool. It does not flush the pending changes of the caller, but sees those already flushed.
+	 */
+	private <R> R readDetached(Function<EntityManager, R> read) {
+		Session detached = TransactionSynchronizationManager.isActualTransactionActive()
+				? entityManager.unwrap(Session.class).sessionWithOptions().connection().openSession()
+				: entityManager.getEntityManagerFactory().createEntityManager().unwrap(Session.class);
+		try {
+			detached.setDefaultReadOnly(true);
+			detached.setHibernateFlushMode(FlushMode.MANUAL);
+			return read.apply(detached);
+		} finally {
+			detached.close();
+		}
+	}
+
+	private TypedQuery<E> getEntityQuery(EntityManager em, Specification<E> spec, Sort sort) {
+		CriteriaQuery<E> query = em.getCriteriaBuilder().createQuery(getDomainClass());
+		Root<E> root = query.from(getDomainClass());
+		query.select(root);
+		return getQuery(em, query, root, spec, sort);
+	}
+
+	private long count(EntityManager em, Specification<E> spec) {
+		CriteriaBuilder builder = em.getCriteriaBuilder();
+		CriteriaQuery<Long> query = builder.createQuery(Long.class);
+		Root<E> root = query.from(getDomainClass());
+		try (ParameterBindings bindings = ParameterBindings.open()) {
+			Predicate predicate = spec == null ? null : spec.toPredicate(root, query, builder);
+			if (predicate != null) {
+				query.where(predicate);
+			}
+			query.select(query.isDistinct() ? builder.countDistinct(root) : builder.count(root));
+			return bindings.applyTo(em.createQuery(query)).getSingleResult();
+		}
+	}
+
+	@Override
+	public Optional<E> findByIdCached(Long id) {
+		return id == null ? Optional.empty() : Optional.ofNullable(findAllByIdCached(Collections.singletonList(id)).get(id));
+	}
+
+	@Override
+	public Map<Long, E> findAllByIdCached(Collection<Long> ids) {
+		Objects.requireNonNull(ids, "ids == null");
+		return entityCache.getAll(ids, chunk -> readDetached(em -> {
+			CriteriaBuilder builder = em.getCriteriaBuilder();
+			CriteriaQuery<E> query = builder.createQuery(getDomainClass());
+			Root<E> root = query.from(getDomainClass());
+			try (ParameterBindings bindings = ParameterBindings.open()) {
+				query.select(root).where(PredicateUtils.toInPredicate(root, builder, entityInformation.getIdAttribute().getName(),
+						chunk, PredicateUtils.DEFAULT_MAX_IN_LIST_SIZE));
+				return bindings.applyTo(em.createQuery(query)).getResultList();
+			}
+		}));
+	}
+
+	@Override
+	public void setEntityCacheSize(int maxSize) {
+		entityCache.setMaxSize(maxSize);
+	}
+
+	@Override
+	public long getEntityCacheHitCount() {
+		return entityCache.getHitCount();
+	}
+
+	@Override
+	public long getEntityCacheMissCount() {
+		return entityCache.getMissCount();
+	}
+
+	/**
+	 * Drops the results cached by the {@literal findAllCached} methods, called by the write methods of this repository.
+	 */
+	protected void invalidateQueryCache() {
+		queryCache.invalidate();
+	}
+
+	/**
+	 * Drops the cached entity of this id, called by the write methods of this repository.
+	 */
+	protected void evictEntity(Long id) {
+		entityCache.evict(id);
+	}
+
+	/**
+	 * Drops all cached entities, called by the bulk write methods of this repository.
+	 */
+	protected void evictEntities() {
+		entityCache.clear();
+	}
+
+	long getQueryCacheHitCount() {
+		return queryCache.getHitCount();
+	}
+
+	@Override
+	@Transactional
+	public <S extends E> S save(S entity) {
+		invalidateQueryCache();
+		S saved = super.save(entity);
+		evictEntity(getId(saved));
+		return saved;
+	}
+
+	@Override
+	@Transactional
+	public <S extends E> S saveAndFlush(S entity) {
+		invalidateQueryCache();
+		S saved = super.saveAndFlush(entity);
+		evictEntity(getId(saved));
+		return saved;
+	}
+
+	@Override
+	@Transactional
+	public <S extends E> List<S> saveAll(Iterable<S> entities) {
+		invalidateQueryCache();
+		return super.saveAll(entities);
+	}
+
+	@Override
+	@Transactional
+	public void delete(E entity) {
+		invalidateQueryCache();
+		evictEntity(getId(entity));
+		super.delete(entity);
+	}
+
+	@Override
+	@Transactional
+	public void deleteById(Long id) {
+		invalidateQueryCache();
+		evictEntity(id);
+		super.deleteById(id);
+	}
+
+	@Override
+	@Transactional
+	public void deleteAll(Iterable<? extends E> entities) {
+		invalidateQueryCache();
+		super.deleteAll(entities);
+	}
+
+	@Override
+	@Transactional
+	public void deleteInBatch(Iterable<E> entities) {
+		invalidateQueryCache();
+		entities.forEach(entity -> evictEntity(getId(entity)));
+		super.deleteInBatch(entities);
+	}
+
+	@Override
+	@Transactional
+	public void deleteAll() {
+		invalidateQueryCache();
+		super.deleteAll();
+	}
+
+	@Override
+	@Transactional
+	public void deleteAllInBatch() {
+		invalidateQueryCache();
+		evictEntities();
+		super.deleteAllInBatch();
+	}
+
+	@Override
+	public <D> List<D> findAll(Specification<E> spec, Sort sort, Class<D> dtoClass, String... properties) {
+		Objects.requireNonNull(dtoClass, "dtoClass == null");
+		CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+		CriteriaQuery<D> query = builder.createQuery(dtoClass);
+		Root<E> root = query.from(getDomainClass());
+		query.select(builder.construct(dtoClass, selections(root, properties)));
+		return getQuery(entityManager, query, root, spec, sort).getResultList();
+	}
+
+	@Override
+	public <D> List<D> findAll(Specification<E> spec, Sort sort, GenericTransformer<Tuple, D> transformer, String... properties) {
+		Objects.requireNonNull(transformer, "transformer == null");
+		CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+		CriteriaQuery<Tuple> query = builder.createTupleQuery();
+		Root<E> root = query.from(getDomainClass());
+		Selection<?>[] selections = selections(root, properties);
+		for (int i = 0; i < selections.length; i++) {
+			selections[i].alias(properties[i]);
+		}
+		query.multiselect(selections);
+		return transformer.apply(getQuery(entityManager, query, root, spec, sort).getResultList());
+	}
+
+	private static Selection<?>[] selections(Root<?> root, String... properties) {
+		if (properties.length == 0) {
+			throw new IllegalArgumentException("No properties to select");
+		}
+		Selection<?>[] selections = new Selection<?>[properties.length];
+		for (int i = 0; i < properties.length; i++) {
+			selections[i] = PredicateUtils.getPath(root, properties[i]);
+		}
+		return selections;
+	}
+
+	/**
+	 * Same as {@link #getQuery(Specification, Class, Sort)} for other selections than the entity or another entity manager.
+	 */
+	private <R> TypedQuery<R> getQuery(EntityManager em, CriteriaQuery<R> query, Root<E> root, Specification<E> spec, Sort sort) {
+		Objects.requireNonNull(sort, "sort == null");
+		CriteriaBuilder builder = em.getCriteriaBuilder();
+		try (ParameterBindings bindings = ParameterBindings.open()) {
+			Predicate predicate = spec == null ? null : spec.toPredicate(root, query, builder);
+			if (predicate != null) {
+				query.where(predicate);
+			}
+			if (sort.isSorted()) {
+				query.orderBy(QueryUtils.toOrders(sort, root, builder));
+			}
+			return bindings.applyTo(em.createQuery(query));
+		}
+	}
+
+	@Override
+	public Stream<E> stream(Specification<E> spec, Sort sort, int fetchSize, int clearInterval) {
+		Objects.requireNonNull(sort, "sort == null");
+		TypedQuery<E> query = getQuery(spec, sort);
+		query.setHint(QueryHints.HINT_FETCH_SIZE, fetchSize);
+		query.setHint(QueryHints.HINT_READONLY, true);
+		Stream<E> results = query.getResultStream();
+		if (clearInterval <= 0) {
+			return results;
+		}
+		Iterator<E> iterator = results.iterator();
+		Iterator<E> clearing = new Iterator<E>() {
+
+			private long count;
+			private long clearedAt;
+
+			@Override
+			public boolean hasNext() {
+				// clears before the cursor reads the next row, the current entity stays managed while it is processed
+				clearIfDue();
+				return iterator.hasNext();
+			}
+
+			@Override
+			public E next() {
+				clearIfDue();
+				count++;
+				return iterator.next();
+			}
+
+			private void clearIfDue() {
+				if (count > clearedAt && count % clearInterval == 0) {
+					flushPendingChanges();
+					entityManager.clear();
+					clearedAt = count;
+				}
+			}
+		};
+		return StreamSupport.stream(Spliterators.spliteratorUnknownSize(clearing, Spliterator.ORDERED | Spliterator.NONNULL), false)
+				.onClose(results::close);
+	}
+
+	/**
+	 * Writes the pending changes of the persistence context before it is cleared, so that they are not discarded.
+	 * With manual flushing the caller decides when to flush, the stream then refuses to discard changes.
+	 */
+	private void flushPendingChanges() {
+		Session session = entityManager.unwrap(Session.class);
+		if (session.getHibernateFlushMode() != FlushMode.MANUAL) {
+			session.flush();
+		} else if (session.isDirty()) {
+			throw new IllegalStateException("The persistence context has unflushed changes, clearing it while streaming would discard them");
+		}
+	}
+
+	@Override
+	@Transactional
+	public int insertAll(Iterable<? extends E> entities, int batchSize) {
+		Objects.requireNonNull(entities, "entities == null");
+		if (batchSize < 1) {
+			throw new IllegalArgumentException("Batch size must not be less than one!");
+		}
+		invalidateQueryCache();
+		Session session = entityManager.unwrap(Session.class);
+		Integer jdbcBatchSize = session.getJdbcBatchSize();
+		session.setJdbcBatchSize(batchSize);
+		try {
+			int count = 0;
+			for (E entity : entities) {
+				entityManager.persist(entity);
+				if (++count % batchSize == 0) {
+					entityManager.flush();
+					entityManager.clear();
+				}
+			}
+			entityManager.flush();
+			entityManager.clear();
+			return count;
+		} finally {
+			session.setJdbcBatchSize(jdbcBatchSize);
+		}
+	}
+
+	@Override
+	@Transactional
+	public int bulkUpdate(Specification<E> spec, Map<String, ?> values) {
+		Objects.requireNonNull(values, "values == null");
+		if (values.isEmpty()) {
+			return 0;
+		}
+		CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+		invalidateQueryCache();
+		evictEntities();
+		CriteriaUpdate<E> update = builder.createCriteriaUpdate(getDomainClass());
+		Root<E> root = update.from(getDomainClass());
+		values.forEach(update::set);
+		try (ParameterBindings bindings = ParameterBindings.open()) {
+			Predicate predicate = toPredicate(spec, root, builder);
+			if (predicate != null) {
+				update.where(predicate);
+			}
+			return bindings.applyTo(entityManager.createQuery(update)).executeUpdate();
+		}
+	}
+
+	@Override
+	@Transactional
+	public int bulkDelete(Specification<E> spec) {
+		CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+		invalidateQueryCache();
+		evictEntities();
+		CriteriaDelete<E> delete = builder.createCriteriaDelete(getDomainClass());
+		Root<E> root = delete.from(getDomainClass());
+		try (ParameterBindings bindings = ParameterBindings.open()) {
+			Predicate predicate = toPredicate(spec, root, builder);
+			if (predicate != null) {
+				delete.where(predicate);
+			}
+			return bindings.applyTo(entityManager.createQuery(delete)).executeUpdate();
+		}
+	}
+
+	/**
+	 * Bulk statements have no {@link javax.persistence.criteria.CriteriaQuery}, the specification gets {@literal null}.
+	 */
+	private Predicate toPredicate(Specification<E> spec, Root<E> root, CriteriaBuilder builder) {
+		return spec == null ? null : spec.toPredicate(root, null, builder);
+	}
+
+	@Override
+	public List<Specification<E>> chunkById(Specification<E> spec, long chunkSize) {
+		if (chunkSize < 1) {
+			throw new IllegalArgumentException("Chunk size must not be less than one!");
+		}
+		String idProperty = entityInformation.getIdAttribute().getName();
+		CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+		CriteriaQuery<Tuple> query = builder.createTupleQuery();
+		Root<E> root = query.from(getDomainClass());
+		Path<Long> id = root.get(idProperty);
+		query.multiselect(builder.min(id), builder.max(id));
+		Tuple range;
+		try (ParameterBindings bindings = ParameterBindings.open()) {
+			Predicate predicate = spec == null ? null : spec.toPredicate(root, query, builder);
+			if (predicate != null) {
+				query.where(predicate);
+			}
+			range = bindings.applyTo(entityManager.createQuery(query)).getSingleResult();
+		}
+		List<Specification<E>> chunks = new ArrayList<>();
+		if (range.get(0) == null) {
+			return chunks;
+		}
+		long max = range.get(1, Long.class);
+		for (long from = range.get(0, Long.class); from <= max; from += chunkSize) {
+			long to = Math.min(max, from + chunkSize - 1);
+			chunks.add(Specification.where(spec)
+					.and(SpecificationUtils.<E, Long> toParameterSpecification(idProperty, from, ComparatorKeyword.ge))
+					.and(SpecificationUtils.<E, Long> toParameterSpecification(idProperty, to, ComparatorKeyword.le)));
+			if (to == max) {
+				break;
+			}
+		}
+		return chunks;
+	}
+
+	private long count(Specification<E> spec, Object countKey, Duration countTtl) {
+		long now = System.nanoTime();
+		CachedCount cached = counts.get(countKey);
+		if (cached != null && now - cached.expiresAt < 0) {
+			return cached.count;
+		}
+		long count = count(spec);
+		if (counts.size() >= MAX_CACHED_COUNTS) {
+			counts.values().removeIf(c -> now - c.expiresAt >= 0);
+		}
+		if (counts.size() < MAX_CACHED_COUNTS) {
+			counts.put(countKey, new CachedCount(count, now + countTtl.toNanos()));
+		}
+		return count;
+	}
+
+	@Override
+	protected <S extends E> TypedQuery<S> getQuery(Specification<S> spec, Class<S> domainClass, Sort sort) {
+		try (ParameterBindings bindings = ParameterBindings.open()) {
+			return bindings.applyTo(super.getQuery(spec, domainClass, sort));
+		}
+	}
+
+	@Override
+	protected <S extends E> TypedQuery<Long> getCountQuery(Specification<S> spec, Class<S> domainClass) {
+		try (ParameterBindings bindings = ParameterBindings.open()) {
+			return bindings.applyTo(super.getCountQuery(spec, domainClass));
+		}
+	}
+
+	private static final class CachedCount {
+
+		private final long count;
+		private final long expiresAt;
+
+		private CachedCount(long count, long expiresAt) {
+			this.count = count;
+			this.expiresAt = expiresAt;
+		}
+	}
+}
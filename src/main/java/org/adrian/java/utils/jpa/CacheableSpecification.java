@@ -0,0 +1,167 @@
+package org.adrian.java.utils.jpa;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+
+import org.adrian.java.utils.jpa.PredicateUtils.ComparatorKeyword;
+import org.springframework.data.jpa.domain.Specification;
+
+/**
+ * A conjunction of property comparisons which, unlike specification lambdas, is a value: two specifications with the
+ * same properties, keywords and values are equal, so they can be the key of a cache,
+ * see {@link ExtendedRepository#findAllCached(CacheableSpecification, org.springframework.data.domain.Pageable, java.time.Duration)}.
+ * <p>
+ * The values are bound as parameters, see {@link SpecificationUtils#toParameterSpecification(String, Comparable, ComparatorKeyword)},
+ * and so are the {@literal IN} lists of {@link #andIn(String, Collection)},
+ * see {@link PredicateUtils#toInPredicate(Root, javax.persistence.criteria.CriteriaBuilder, String, java.util.Collection, int)}.
+ *
+ * <pre>
+ * CacheableSpecification&lt;Item&gt; spec = CacheableSpecification.&lt;Item&gt; all()
+ *         .and("category", Category.ORATORIO)
+ *         .and("price", 1600, ComparatorKeyword.gt);
+ * </pre>
+ *
+ * @param <E> the entity type
+ * @author Marcus Adrian
+ */
+public final class CacheableSpecification<E> implements Specification<E> {
+
+	private static final long serialVersionUID = 1L;
+
+	private static final CacheableSpecification<?> ALL = new CacheableSpecification<>(Collections.emptyList());
+
+	private final List<Criterion> criteria;
+
+	private CacheableSpecification(List<Criterion> criteria) {
+		this.criteria = criteria;
+	}
+
+	/**
+	 * @return the specification matching all entities
+	 */
+	@SuppressWarnings("unchecked")
+	public static <E> CacheableSpecification<E> all() {
+		return (CacheableSpecification<E>) ALL;
+	}
+
+	public static <E, T extends Comparable<? super T>> CacheableSpecification<E> where(String propertyName, T value, ComparatorKeyword comparatorKeyword) {
+		return CacheableSpecification.<E> all().and(propertyName, value, comparatorKeyword);
+	}
+
+	public static <E, T extends Comparable<? super T>> CacheableSpecification<E> where(String propertyName, T value) {
+		return CacheableSpecification.<E> all().and(propertyName, value);
+	}
+
+	/**
+	 * @param value might be {@literal null}, then this specification is returned
+	 * @return a new specification, also comparing the property to {@literal value}
+	 */
+	public <T extends Comparable<? super T>> CacheableSpecification<E> and(String propertyName, T value, ComparatorKeyword comparatorKeyword) {
+		Objects.requireNonNull(propertyName, "propertyName == null");
+		Objects.requireNonNull(comparatorKeyword, "comparatorKeyword == null");
+		return value == null ? this : with(new Criterion(propertyName, comparatorKeyword, value));
+	}
+
+	public <T extends Comparable<? super T>> CacheableSpecification<E> and(String propertyName, T value) {
+		return and(propertyName, value, ComparatorKeyword.eq);
+	}
+
+	/**
+	 * @param values might be {@literal null} or empty, then this specification is returned
+	 * @return a new specification, also matching any of the values, see {@link SpecificationUtils#toSpecification(String, List)}
+	 */
+	public <T extends Comparable<? super T>> CacheableSpecification<E> andIn(String propertyName, Collection<T> values) {
+		Objects.requireNonNull(propertyName, "propertyName == null");
+		if (values == null || values.isEmpty()) {
+			return this;
+		}
+		return with(new Criterion(propertyName, null, Collections.unmodifiableList(new ArrayList<>(values))));
+	}
+
+	private CacheableSpecification<E> with(Criterion criterion) {
+		List<Criterion> copy = new ArrayList<>(criteria.size() + 1);
+		copy.addAll(criteria);
+		copy.add(criterion);
+		return new CacheableSpecification<>(Collections.unmodifiableList(copy));
+	}
+
+	@Override
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	public Predicate toPredicate(Root<E> root, CriteriaQuery<?> query, CriteriaBuilder builder) {
+		List<Predicate> predicates = new ArrayList<>(criteria.size());
+		for (Criterion criterion : criteria) {
+			Predicate predicate = criterion.comparatorKeyword == null
+					? PredicateUtils.toInPredicate(root, builder, criterion.propertyName, (Collection) criterion.value, PredicateUtils.DEFAULT_MAX_IN_LIST_SIZE)
+					: SpecificationUtils.<E, Comparable> toParameterSpecification(criterion.propertyName, (Comparable) criterion.value, criterion.comparatorKeyword)
+							.toPredicate(root, query, builder);
+			if (predicate != null) {
+				predicates.add(predicate);
+			}
+		}
+		return predicates.isEmpty() ? null : builder.and(predicates.toArray(new Predicate[predicates.size()]));
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		return this == obj || obj instanceof CacheableSpecification && criteria.equals(((CacheableSpecification<?>) obj).criteria);
+	}
+
+	@Override
+	public int hashCode() {
+		return criteria.hashCode();
+	}
+
+	@Override
+	public String toString() {
+		return criteria.toString();
+	}
+
+	/**
+	 * A comparison, or an {@literal IN} list if the keyword is {@literal null}.
+	 */
+	private static final class Criterion implements Serializable {
+
+		private static final long serialVersionUID = 1L;
+
+		private final String propertyName;
+		private final ComparatorKeyword comparatorKeyword;
+		private final Object value;
+
+		private Criterion(String propertyName, ComparatorKeyword comparatorKeyword, Object value) {
+			this.propertyName = propertyName;
+			this.comparatorKeyword = comparatorKeyword;
+			this.value = value;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof Criterion)) {
+				return false;
+			}
+			Criterion other = (Criterion) obj;
+			return propertyName.equals(other.propertyName) && comparatorKeyword == other.comparatorKeyword && value.equals(other.value);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(propertyName, comparatorKeyword, value);
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%s %s %s", propertyName, comparatorKeyword == null ? "in" : comparatorKeyword.getSymbol(), value);
+		}
+	}
+}
@@ -0,0 +1,162 @@
+package org.adrian.java.utils.jpa;
+
+import java.util.Objects;
+
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Expression;
+import javax.persistence.criteria.Root;
+import javax.persistence.metamodel.Attribute;
+import javax.persistence.metamodel.ManagedType;
+import javax.persistence.metamodel.Metamodel;
+import javax.persistence.metamodel.PluralAttribute;
+import javax.persistence.metamodel.SingularAttribute;
+import javax.persistence.metamodel.Type;
+
+import org.adrian.java.utils.jpa.PredicateUtils.ComparatorKeyword;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.util.ClassUtils;
+
+/**
+ * A filter shape (property path, {@link ComparatorKeyword}, value type) validated once against the JPA metamodel,
+ * typically at startup. Binding a value is the only work left per request.
+ *
+ * <pre>
+ * CompiledFilter&lt;Item, Integer&gt; maxPrice = CompiledFilter.compile(entityManager.getMetamodel(), Item.class, "price", ComparatorKeyword.le, Integer.class);
+ * itemRepository.findAll(maxPrice.bind(1800));
+ * </pre>
+ *
+ * @param <E> the entity type
+ * @param <T> the value type
+ */
+public class CompiledFilter<E, T extends Comparable<? super T>> {
+
+	private final String propertyPath;
+	private final ComparatorKeyword comparatorKeyword;
+	private final Class<T> valueType;
+	// Decided once which comparisons of the CriteriaBuilder apply.
+	private final boolean numeric;
+
+	private CompiledFilter(String propertyPath, ComparatorKeyword comparatorKeyword, Class<T> valueType) {
+		this.propertyPath = propertyPath;
+		this.comparatorKeyword = comparatorKeyword;
+		this.valueType = valueType;
+		this.numeric = Number.class.isAssignableFrom(ClassUtils.resolvePrimitiveIfNecessary(valueType));
+	}
+
+	/**
+	 * @param metamodel         the metamodel to validate against, not {@literal null}
+	 * @param entityClass       the entity the property path starts from, not {@literal null}
+	 * @param propertyPath      the property name or dotted property names, not {@literal null}
+	 * @param comparatorKeyword not {@literal null}
+	 * @param valueType         the type of the bound values, not {@literal null}
+	 * @return the compiled filter
+	 * @throws IllegalArgumentException if the path does not exist or its type does not match {@literal valueType}
+	 */
+	public static <E, T extends Comparable<? super T>> CompiledFilter<E, T> compile(Metamodel metamodel, Class<E> entityClass, String propertyPath,
+			ComparatorKeyword comparatorKeyword, Class<T> valueType) {
+		Objects.requireNonNull(metamodel, "metamodel == null");
+		Objects.requireNonNull(entityClass, "entityClass == null");
+		return compile(metamodel.managedType(entityClass), propertyPath, comparatorKeyword, valueType);
+	}
+
+	/**
+	 * Same as {@link #compile(Metamodel, Class, String, ComparatorKeyword, Class)} for a managed type,
+	 * e.g. {@link Root#getModel()}.
+	 */
+	public static <E, T extends Comparable<? super T>> CompiledFilter<E, T> compile(ManagedType<E> managedType, String propertyPath,
+			ComparatorKeyword comparatorKeyword, Class<T> valueType) {
+		Objects.requireNonNull(managedType, "managedType == null");
+		Objects.requireNonNull(propertyPath, "propertyPath == null");
+		Objects.requireNonNull(comparatorKeyword, "comparatorKeyword == null");
+		Objects.requireNonNull(valueType, "valueType == null");
+
+		Class<?> attributeType = resolve(managedType, propertyPath);
+		if (!ClassUtils.isAssignable(attributeType, valueType)) {
+			throw new IllegalArgumentException(String.format("%s.%s : %s values cannot be compared to %s",
+					managedType.getJavaType().getSimpleName(), propertyPath, valueType.getName(), attributeType.getName()));
+		}
+		return new CompiledFilter<>(propertyPath, comparatorKeyword, valueType);
+	}
+
+	/**
+	 * The java type of the attribute at the end of the path.
+	 */
+	private static Class<?> resolve(ManagedType<?> managedType, String propertyPath) {
+		ManagedType<?> current = managedType;
+		Attribute<?, ?> attribute = null;
+		for (String segment : propertyPath.split("\\.")) {
+			if (current == null) {
+				throw new IllegalArgumentException(String.format("%s : %s is not a managed type", propertyPath, attribute.getJavaType().getSimpleName()));
+			}
+			try {
+				attribute = current.getAttribute(segment);
+			} catch (IllegalArgumentException e) {
+				throw new IllegalArgumentException(String.format("%s : %s has no attribute %s", propertyPath, current.getJavaType().getSimpleName(), segment), e);
+			}
+			Type<?> type = attribute instanceof PluralAttribute
+					? ((PluralAttribute<?, ?, ?>) attribute).getElementType()
+					: ((SingularAttribute<?, ?>) attribute).getType();
+			current = type instanceof ManagedType ? (ManagedType<?>) type : null;
+		}
+		return attribute instanceof PluralAttribute ? ((PluralAttribute<?, ?, ?>) attribute).getElementType().getJavaType() : attribute.getJavaType();
+	}
+
+	/**
+	 * @param value might be {@literal null}
+	 * @return {@literal null} if {@literal value} is {@literal null}, otherwise the specification comparing the property to {@literal value}
+	 */
+	public Specification<E> bind(T value) {
+		if (value == null) {
+			return null;
+		}
+		if (numeric) {
+			Number number = (Number) value;
+			return (Root<E> root, CriteriaQuery<?> query, CriteriaBuilder builder) ->
+					comparatorKeyword.toNumberPredicate(builder, PredicateUtils.<Number> getPath(root, propertyPath), number);
+		}
+		return (Root<E> root, CriteriaQuery<?> query, CriteriaBuilder builder) ->
+				comparatorKeyword.toComparablePredicate(builder, PredicateUtils.<T> getPath(root, propertyPath), value);
+	}
+
+	/**
+	 * Same as {@link #bind(Comparable)}, but the value is bound as a named parameter of the query instead of a literal,
+	 * so that all values share the same statement and query plan.
+	 * The parameter is bound by the query methods of {@link BaseRepositoryImpl};
+	 * anywhere else the value falls back to a literal.
+	 *
+	 * @param value might be {@literal null}
+	 * @return {@literal null} if {@literal value} is {@literal null}
+	 */
+	@SuppressWarnings("unchecked")
+	public Specification<E> bindParameter(T value) {
+		if (value == null) {
+			return null;
+		}
+		if (numeric) {
+			return (Root<E> root, CriteriaQuery<?> query, CriteriaBuilder builder) ->
+					comparatorKeyword.toNumberPredicate(builder, PredicateUtils.<Number> getPath(root, propertyPath),
+							(Expression<? extends Number>) ParameterBindings.bind(builder, valueType, value));
+		}
+		return (Root<E> root, CriteriaQuery<?> query, CriteriaBuilder builder) ->
+				comparatorKeyword.toComparablePredicate(builder, PredicateUtils.<T> getPath(root, propertyPath),
+						ParameterBindings.bind(builder, valueType, value));
+	}
+
+	public String getPropertyPath() {
+		return propertyPath;
+	}
+
+	public ComparatorKeyword getComparatorKeyword() {
+		return comparatorKeyword;
+	}
+
+	public Class<T> getValueType() {
+		return valueType;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%s %s ? (%s)", propertyPath, comparatorKeyword.getSymbol(), valueType.getSimpleName());
+	}
+}
@@ -0,0 +1,275 @@
+package org.adrian.java.utils.jpa;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Entities by id, evicting the least recently used beyond the maximum size.
+ * Concurrent lookups of the same id share one load, and the ids missing from the cache are loaded together
+ * in chunks of {@literal IN} lists. Ids of missing entities are not cached.
+ * <p>
+ * The evictions of a transaction are collected in one resource bound to it, and applied again after its completion.
+ * Until then, the transaction loads without the cache, since it may read its own uncommitted writes.
+ *
+ * @param <E> the entity type
+ */
+final class EntityCache<E> {
+
+	private volatile int maxSize;
+	// set by the first lookup, until then there is nothing to evict
+	private volatile boolean used;
+	private final int maxBatchSize;
+	private final Function<E, Long> idFunction;
+	// completed or loading entities, null if the entity does not exist
+	private final Map<Long, CompletableFuture<E>> entities;
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+
+	EntityCache(int maxSize, int maxBatchSize, Function<E, Long> idFunction) {
+		this.maxSize = checkMaxSize(maxSize);
+		this.maxBatchSize = maxBatchSize;
+		this.idFunction = idFunction;
+		this.entities = new LinkedHashMap<Long, CompletableFuture<E>>(16, 0.75f, true) {
+
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Long, CompletableFuture<E>> eldest) {
+				return size() > EntityCache.this.maxSize;
+			}
+		};
+	}
+
+	private static int checkMaxSize(int maxSize) {
+		if (maxSize < 0) {
+			throw new IllegalArgumentException(String.format("maxSize must not be negative : %d", maxSize));
+		}
+		return maxSize;
+	}
+
+	/**
+	 * Sets the maximum size, evicting the least recently used entities beyond it.
+	 */
+	void setMaxSize(int maxSize) {
+		synchronized (entities) {
+			this.maxSize = checkMaxSize(maxSize);
+			Iterator<CompletableFuture<E>> eldest = entities.values().iterator();
+			while (entities.size() > maxSize) {
+				eldest.next();
+				eldest.remove();
+			}
+		}
+	}
+
+	/**
+	 * @param ids    the ids, {@literal null}s are ignored
+	 * @param loader loads the entities of at most {@literal maxBatchSize} ids, e.g. {@literal findAllById}
+	 * @return the existing entities by id, in the order of {@literal ids}
+	 */
+	Map<Long, E> getAll(Collection<Long> ids, Function<List<Long>, List<E>> loader) {
+		if (!used) {
+			used = true;
+		}
+		if (TransactionSynchronizationManager.hasResource(this)) {
+			return loadUncached(ids, loader);
+		}
+		Map<Long, CompletableFuture<E>> futures = new LinkedHashMap<>();
+		Map<Long, CompletableFuture<E>> loads = new LinkedHashMap<>();
+		synchronized (entities) {
+			for (Long id : ids) {
+				if (id == null || futures.containsKey(id)) {
+					continue;
+				}
+				CompletableFuture<E> future = entities.get(id);
+				if (future == null) {
+					future = new CompletableFuture<>();
+					entities.put(id, future);
+					loads.put(id, future);
+					misses.increment();
+				} else {
+					hits.increment();
+				}
+				futures.put(id, future);
+			}
+		}
+		if (!loads.isEmpty()) {
+			load(loads, loader);
+		}
+		Map<Long, E> result = new LinkedHashMap<>();
+		for (Map.Entry<Long, CompletableFuture<E>> entry : futures.entrySet()) {
+			E entity = join(entry.getValue());
+			if (entity != null) {
+				result.put(entry.getKey(), entity);
+			}
+		}
+		return result;
+	}
+
+	private void load(Map<Long, CompletableFuture<E>> loads, Function<List<Long>, List<E>> loader) {
+		try {
+			List<Long> ids = new ArrayList<>(loads.keySet());
+			for (int from = 0; from < ids.size(); from += maxBatchSize) {
+				for (E entity : loader.apply(ids.subList(from, Math.min(ids.size(), from + maxBatchSize)))) {
+					CompletableFuture<E> future = loads.get(idFunction.apply(entity));
+					if (future != null) {
+						future.complete(entity);
+					}
+				}
+			}
+		} catch (RuntimeException e) {
+			loads.forEach((id, future) -> future.completeExceptionally(e));
+			throw e;
+		} finally {
+			// neither missing entities nor failed loads are cached
+			for (Map.Entry<Long, CompletableFuture<E>> entry : loads.entrySet()) {
+				CompletableFuture<E> future = entry.getValue();
+				if (future.complete(null) || future.isCompletedExceptionally()) {
+					synchronized (entities) {
+						entities.remove(entry.getKey(), future);
+					}
+				}
+			}
+		}
+	}
+
+	private Map<Long, E> loadUncached(Collection<Long> ids, Function<List<Long>, List<E>> loader) {
+		List<Long> distinctIds = new ArrayList<>(new LinkedHashSet<>(ids));
+		distinctIds.remove(null);
+		misses.add(distinctIds.size());
+		Map<Long, E> loaded = new HashMap<>();
+		for (int from = 0; from < distinctIds.size(); from += maxBatchSize) {
+			for (E entity : loader.apply(distinctIds.subList(from, Math.min(distinctIds.size(), from + maxBatchSize)))) {
+				loaded.put(idFunction.apply(entity), entity);
+			}
+		}
+		Map<Long, E> result = new LinkedHashMap<>();
+		for (Long id : distinctIds) {
+			E entity = loaded.get(id);
+			if (entity != null) {
+				result.put(id, entity);
+			}
+		}
+		return result;
+	}
+
+	private static <E> E join(CompletableFuture<E> future) {
+		try {
+			return future.join();
+		} catch (CompletionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw e;
+		}
+	}
+
+	/**
+	 * Evicts the entity now and, within a transaction, again after its completion, since lookups running meanwhile
+	 * still read the state before the write.
+	 */
+	void evict(Long id) {
+		if (id == null) {
+			return;
+		}
+		if (!used) {
+			// nothing cached yet, but lookups may start before the transaction completes
+			evictAllOnCompletion();
+			return;
+		}
+		synchronized (entities) {
+			entities.remove(id);
+		}
+		Evictions evictions = evictions();
+		if (evictions != null && !evictions.all) {
+			evictions.ids.add(id);
+			if (evictions.ids.size() > maxSize) {
+				// clearing costs less than removing more ids than the cache can hold
+				evictions.all = true;
+				evictions.ids.clear();
+			}
+		}
+	}
+
+	/**
+	 * Evicts all entities, now and, within a transaction, again after its completion.
+	 */
+	void clear() {
+		if (used) {
+			synchronized (entities) {
+				entities.clear();
+			}
+		}
+		evictAllOnCompletion();
+	}
+
+	private void evictAllOnCompletion() {
+		Evictions evictions = evictions();
+		if (evictions != null && !evictions.all) {
+			evictions.all = true;
+			evictions.ids.clear();
+		}
+	}
+
+	/**
+	 * @return the evictions of the current transaction, registered once per transaction, {@literal null} outside of a transaction
+	 */
+	private Evictions evictions() {
+		if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+			return null;
+		}
+		Evictions evictions = (Evictions) TransactionSynchronizationManager.getResource(this);
+		if (evictions == null) {
+			Evictions registered = new Evictions();
+			TransactionSynchronizationManager.bindResource(this, registered);
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+
+				@Override
+				public void afterCompletion(int status) {
+					TransactionSynchronizationManager.unbindResourceIfPossible(EntityCache.this);
+					synchronized (entities) {
+						if (registered.all) {
+							entities.clear();
+						} else {
+							registered.ids.forEach(entities::remove);
+						}
+					}
+				}
+			});
+			evictions = registered;
+		}
+		return evictions;
+	}
+
+	long getHitCount() {
+		return hits.sum();
+	}
+
+	long getMissCount() {
+		return misses.sum();
+	}
+
+	/**
+	 * The ids evicted by a transaction, confined to its thread.
+	 */
+	private static final class Evictions {
+
+		private final Set<Long> ids = new HashSet<>();
+		// all entities are evicted, the ids are not collected
+		private boolean all;
+	}
+}
@@ -0,0 +1,238 @@
+package org.adrian.java.utils.jpa;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import javax.persistence.Tuple;
+
+import org.adrian.java.utils.transform.GenericTransformer;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.repository.NoRepositoryBean;
+
+/**
+ * The query, cache and bulk methods of {@link BaseRepositoryImpl}, in addition to those of {@link BaseRepository}.
+ * <p>
+ * The repositories extending this interface are only implemented if {@link BaseRepositoryImpl} is declared as
+ * {@literal repositoryBaseClass}, e.g. {@literal @EnableJpaRepositories(repositoryBaseClass = BaseRepositoryImpl.class)},
+ * otherwise the repository proxies cannot be created.
+ */
+@NoRepositoryBean
+public interface ExtendedRepository<E> extends BaseRepository<E> {
+
+	/**
+	 * Reads a slice without counting the matching entities: one more entity than the page size is read to know if
+	 * there is a next slice.
+	 *
+	 * @param spec     might be {@literal null}
+	 * @param pageable not {@literal null}
+	 * @return the slice, never {@literal null}
+	 */
+	Slice<E> findSlice(Specification<E> spec, Pageable pageable);
+
+	/**
+	 * Same as {@link #findAll(Specification, Pageable)}, but the total is counted at most once per {@literal countTtl}
+	 * for the same {@literal countKey}, so it may be out of date by the entities written in the meantime.
+	 * As usual the count is skipped if the total can be derived from the page.
+	 *
+	 * @param spec     might be {@literal null}
+	 * @param pageable not {@literal null}
+	 * @param countKey identifies the specification, e.g. the request parameters of the search, not {@literal null}
+	 * @param countTtl how long a count is reused, not {@literal null}
+	 * @return the page, never {@literal null}
+	 */
+	Page<E> findAll(Specification<E> spec, Pageable pageable, Object countKey, Duration countTtl);
+
+	/**
+	 * Default maximum number of query results cached per repository by the {@literal findAllCached} methods.
+	 */
+	int DEFAULT_QUERY_CACHE_SIZE = 500;
+
+	/**
+	 * Sets the maximum number of query results cached by the {@literal findAllCached} methods, the least recently used
+	 * results beyond it are evicted.
+	 *
+	 * @param maxSize the maximum number of results, 0 disables the cache
+	 */
+	void setQueryCacheSize(int maxSize);
+
+	/**
+	 * Same as {@link #findAll(Specification, Pageable)}, but the page is reused for {@literal ttl} for an equal
+	 * specification and pageable, until an entity is written through this repository.
+	 * At most {@link #DEFAULT_QUERY_CACHE_SIZE} results are cached unless set by {@link #setQueryCacheSize(int)},
+	 * the least recently used are evicted first.
+	 * <p>
+	 * The page is read in a separate read-only persistence context that shares the connection and the transaction of the
+	 * caller, so no other connection is taken from the pool. It sees the flushed writes of that transaction, but not its
+	 * pending changes. A transaction that wrote through this repository reads without the cache until its completion.
+	 * The cached entities are detached: they are shared by the callers and must not be modified, and their lazy
+	 * associations that were not loaded cannot be loaded.
+	 * Writes to the entity type that bypass this repository, e.g. through the {@link javax.persistence.EntityManager},
+	 * are only seen after the time to live, and may be cached before their transaction commits once flushed.
+	 *
+	 * @param spec     not {@literal null}
+	 * @param pageable not {@literal null}
+	 * @param ttl      how long the page is reused, not {@literal null}
+	 * @return the page, never {@literal null}
+	 */
+	Page<E> findAllCached(CacheableSpecification<E> spec, Pageable pageable, Duration ttl);
+
+	/**
+	 * Same as {@link #findAllCached(CacheableSpecification, Pageable, Duration)} for all matching entities.
+	 */
+	List<E> findAllCached(CacheableSpecification<E> spec, Sort sort, Duration ttl);
+
+	/**
+	 * Default maximum number of entities cached per repository by {@link #findByIdCached(Long)} and {@link #findAllByIdCached(Collection)}.
+	 */
+	int DEFAULT_ENTITY_CACHE_SIZE = 10_000;
+
+	/**
+	 * Sets the maximum number of entities cached by {@link #findByIdCached(Long)} and {@link #findAllByIdCached(Collection)},
+	 * the least recently used entities beyond it are evicted.
+	 *
+	 * @param maxSize the maximum number of entities, 0 disables the cache
+	 */
+	void setEntityCacheSize(int maxSize);
+
+	/**
+	 * Same as {@link #findById(Object)}, but the entity is cached until it is written through this repository,
+	 * see {@link #findAllByIdCached(Collection)}.
+	 *
+	 * @param id might be {@literal null}
+	 * @return the entity, empty if it does not exist
+	 */
+	Optional<E> findByIdCached(Long id);
+
+	/**
+	 * Finds entities by id through a cache of at most {@link #DEFAULT_ENTITY_CACHE_SIZE} entities unless set by
+	 * {@link #setEntityCacheSize(int)}, the least recently used are evicted first. The ids missing from the cache are read
+	 * together by {@literal IN} lists of at most {@link PredicateUtils#DEFAULT_MAX_IN_LIST_SIZE} ids,
+	 * concurrent lookups of the same id share one read.
+	 * <p>
+	 * The entities are read like {@link #findAllCached(CacheableSpecification, Pageable, Duration)}, in a separate read-only
+	 * persistence context on the connection of the caller, and a transaction that wrote through this repository reads
+	 * without the cache until its completion. The cached entities are detached: they are shared by the callers and must
+	 * not be modified, and their lazy associations that were not loaded cannot be loaded.
+	 * Writes that bypass this repository are not seen until the entity is evicted.
+	 *
+	 * @param ids not {@literal null}, {@literal null} elements are ignored
+	 * @return the existing entities by id, in the order of {@literal ids}
+	 */
+	Map<Long, E> findAllByIdCached(Collection<Long> ids);
+
+	long getEntityCacheHitCount();
+
+	long getEntityCacheMissCount();
+
+	/**
+	 * Reads only the given properties of the matching entities into DTOs, through a constructor of the DTO class
+	 * taking the property values in the given order. No entity is loaded.
+	 *
+	 * @param spec       might be {@literal null}
+	 * @param sort       not {@literal null}
+	 * @param dtoClass   not {@literal null}
+	 * @param properties the property names or dotted property names, associations are inner joined
+	 * @return the DTOs, never {@literal null}
+	 */
+	<D> List<D> findAll(Specification<E> spec, Sort sort, Class<D> dtoClass, String... properties);
+
+	/**
+	 * Reads only the given properties of the matching entities as {@link Tuple}s, with the property names as aliases,
+	 * transformed by {@literal transformer}, e.g. into DTOs with setters. No entity is loaded.
+	 *
+	 * <pre>
+	 * GenericTransformer&lt;Tuple, ItemDto&gt; transformer = new GenericTransformer&lt;&gt;(ItemDto::new, (tuple, dto) -&gt; {
+	 *     dto.setName(tuple.get("name", String.class));
+	 *     dto.setPrice(tuple.get("price", Integer.class));
+	 * });
+	 * List&lt;ItemDto&gt; dtos = itemRepository.findAll(spec, sort, transformer, "name", "price");
+	 * </pre>
+	 *
+	 * @param spec        might be {@literal null}
+	 * @param sort        not {@literal null}
+	 * @param transformer not {@literal null}
+	 * @param properties  the property names or dotted property names, associations are inner joined
+	 * @return the transformed tuples, never {@literal null}
+	 */
+	<D> List<D> findAll(Specification<E> spec, Sort sort, GenericTransformer<Tuple, D> transformer, String... properties);
+
+	/**
+	 * Default fetch size and clear interval of {@link #stream(Specification, Sort)}.
+	 */
+	int DEFAULT_STREAM_FETCH_SIZE = 500;
+
+	/**
+	 * Streams the entities through a read-only cursor, fetching {@literal fetchSize} rows at a time.
+	 * Every {@literal clearInterval} entities the persistence context is cleared before the next entity is read,
+	 * so the entities read before are detached and the memory used does not grow with the result.
+	 * <p>
+	 * The clear applies to the whole persistence context of the caller's transaction: its pending changes are flushed first,
+	 * or, if the flush mode is {@link org.hibernate.FlushMode#MANUAL} and there are pending changes, an
+	 * {@link IllegalStateException} is thrown instead of discarding them. Any other entity the caller holds is detached too.
+	 * The streamed entities are read-only, changes to them are not written.
+	 * <p>
+	 * Must be called within a transaction, and the stream must be closed, e.g. by a try-with-resources.
+	 *
+	 * @param spec          might be {@literal null}
+	 * @param sort          not {@literal null}
+	 * @param fetchSize     the JDBC fetch size
+	 * @param clearInterval the number of entities read between two clears of the persistence context, 0 never clears it
+	 * @return the entities, never {@literal null}
+	 */
+	Stream<E> stream(Specification<E> spec, Sort sort, int fetchSize, int clearInterval);
+
+	default Stream<E> stream(Specification<E> spec, Sort sort) {
+		return stream(spec, sort, DEFAULT_STREAM_FETCH_SIZE, DEFAULT_STREAM_FETCH_SIZE);
+	}
+
+	/**
+	 * Persists the entities in JDBC batches of {@literal batchSize}, flushing and clearing the persistence context
+	 * after each batch, so the entities (and any other entity of the persistence context) are detached afterwards.
+	 * <p>
+	 * Batching needs ids that are known before the insert, e.g. {@link SequenceBaseEntity},
+	 * and benefits from {@literal hibernate.order_inserts} when several entity types are inserted.
+	 *
+	 * @param entities  not {@literal null}
+	 * @param batchSize the number of entities per JDBC batch
+	 * @return the number of persisted entities
+	 */
+	int insertAll(Iterable<? extends E> entities, int batchSize);
+
+	/**
+	 * Updates the matching entities with one bulk {@literal UPDATE} statement, without loading them.
+	 * The specification must not join other entities, and the entities of the persistence context are not updated.
+	 *
+	 * @param spec   might be {@literal null} to update all entities
+	 * @param values the new values by property name, not {@literal null}
+	 * @return the number of updated entities
+	 */
+	int bulkUpdate(Specification<E> spec, Map<String, ?> values);
+
+	/**
+	 * Deletes the matching entities with one bulk {@literal DELETE} statement, without loading them.
+	 * The specification must not join other entities, and cascades are not applied.
+	 *
+	 * @param spec might be {@literal null} to delete all entities
+	 * @return the number of deleted entities
+	 */
+	int bulkDelete(Specification<E> spec);
+
+	/**
+	 * Splits a specification by ranges of {@literal chunkSize} consecutive ids, from the lowest to the highest matching id,
+	 * e.g. to run {@link #bulkUpdate(Specification, Map)} or {@link #bulkDelete(Specification)} in one transaction per chunk
+	 * so that locks are held shortly.
+	 *
+	 * @param spec      might be {@literal null}
+	 * @param chunkSize the number of ids per chunk
+	 * @return the specifications of the chunks, empty if no entity matches
+	 */
+	List<Specification<E>> chunkById(Specification<E> spec, long chunkSize);
+
+}
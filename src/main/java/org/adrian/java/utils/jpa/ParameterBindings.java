@@ -0,0 +1,97 @@
+package org.adrian.java.utils.jpa;
+
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiFunction;
+
+import javax.persistence.Query;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.Expression;
+import javax.persistence.criteria.From;
+import javax.persistence.criteria.ParameterExpression;
+import javax.persistence.criteria.Path;
+
+import org.springframework.util.ClassUtils;
+
+/**
+ * Collects the parameter values of the specifications applied to a criteria query of the current thread,
+ * until they are bound to the created {@link Query}. Also keeps the property paths resolved for the query,
+ * so that each one is resolved once.
+ */
+final class ParameterBindings implements AutoCloseable {
+
+	static final String PARAMETER_PREFIX = "spec_";
+
+	private static final ThreadLocal<ParameterBindings> CURRENT = new ThreadLocal<>();
+
+	private final ParameterBindings outer;
+	private final List<Map.Entry<ParameterExpression<?>, Object>> values = new ArrayList<>();
+	// by identity of the root or join they start from, then by property path
+	private final Map<From<?, ?>, Map<String, Path<?>>> paths = new IdentityHashMap<>();
+
+	private ParameterBindings(ParameterBindings outer) {
+		this.outer = outer;
+	}
+
+	/**
+	 * Collects the parameters of the current thread until {@link #close()}.
+	 */
+	static ParameterBindings open() {
+		ParameterBindings bindings = new ParameterBindings(CURRENT.get());
+		CURRENT.set(bindings);
+		return bindings;
+	}
+
+	/**
+	 * @return a named parameter for {@literal value} if bindings are open, otherwise a literal
+	 */
+	@SuppressWarnings("unchecked")
+	static <T> Expression<T> bind(CriteriaBuilder builder, Class<T> type, T value) {
+		ParameterBindings bindings = CURRENT.get();
+		if (bindings == null) {
+			return builder.literal(value);
+		}
+		ParameterExpression<T> parameter = builder.parameter((Class<T>) ClassUtils.resolvePrimitiveIfNecessary(type),
+				PARAMETER_PREFIX + bindings.values.size());
+		bindings.values.add(new SimpleImmutableEntry<>(parameter, value));
+		return parameter;
+	}
+
+	/**
+	 * @return the path resolved once while bindings are open, otherwise resolved on each call
+	 */
+	static Path<?> path(From<?, ?> from, String propertyPath, BiFunction<From<?, ?>, String, Path<?>> resolver) {
+		ParameterBindings bindings = CURRENT.get();
+		if (bindings == null) {
+			return resolver.apply(from, propertyPath);
+		}
+		Map<String, Path<?>> fromPaths = bindings.paths.computeIfAbsent(from, key -> new HashMap<>());
+		Path<?> path = fromPaths.get(propertyPath);
+		if (path == null) {
+			path = resolver.apply(from, propertyPath);
+			fromPaths.put(propertyPath, path);
+		}
+		return path;
+	}
+
+	@SuppressWarnings("unchecked")
+	<Q extends Query> Q applyTo(Q query) {
+		for (Map.Entry<ParameterExpression<?>, Object> entry : values) {
+			query.setParameter((ParameterExpression<Object>) entry.getKey(), entry.getValue());
+		}
+		return query;
+	}
+
+	@Override
+	public void close() {
+		if (outer == null) {
+			CURRENT.remove();
+		} else {
+			CURRENT.set(outer);
+		}
+	}
+}
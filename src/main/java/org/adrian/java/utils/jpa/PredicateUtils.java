@@ -1,11 +1,25 @@
 package org.adrian.java.utils.jpa;
 
-import java.util.function.BiFunction;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
 
 import javax.persistence.criteria.CriteriaBuilder;
 import javax.persistence.criteria.Expression;
+import javax.persistence.criteria.From;
+import javax.persistence.criteria.Join;
+import javax.persistence.criteria.JoinType;
+import javax.persistence.criteria.Path;
 import javax.persistence.criteria.Predicate;
 import javax.persistence.criteria.Root;
+import javax.persistence.metamodel.Attribute;
+import javax.persistence.metamodel.Bindable;
+import javax.persistence.metamodel.ManagedType;
+import javax.persistence.metamodel.PluralAttribute;
+import javax.persistence.metamodel.SingularAttribute;
+import javax.persistence.metamodel.Type;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -14,12 +28,19 @@ public class PredicateUtils {
 
 	private static final Logger LOG = LoggerFactory.getLogger(PredicateUtils.class);
 	
+	/**
+	 * Maximum number of values of an {@literal IN} list, a limit most databases support.
+	 */
+	public static final int DEFAULT_MAX_IN_LIST_SIZE = 1000;
+	
 	
 	public static <E, T extends Comparable<? super T>> Predicate toPredicate(Root<E> root, CriteriaBuilder builder, String propertyName, T value, ComparatorKeyword comparatorKeyword) {
 		if (value == null) {
 			return null;
 		}
-		LOG.debug("{}.{} {} {}", root.getJavaType().getSimpleName(), propertyName, comparatorKeyword.symbol, value);
+		if (LOG.isDebugEnabled()) {
+			LOG.debug("{}.{} {} {}", root.getJavaType().getSimpleName(), propertyName, comparatorKeyword.symbol, value);
+		}
 		return comparatorKeyword.toPredicate(root, builder, propertyName, value);
 	}
 
@@ -27,37 +48,237 @@ public class PredicateUtils {
 		return toPredicate(root, builder, propertyName, value, ComparatorKeyword.DEFAULT);
 	}
 
+	/**
+	 * Creates an {@literal IN} predicate for the distinct non {@literal null} values.
+	 * Lists longer than {@literal maxInListSize} are split in several {@literal IN} predicates joined by {@literal OR}.
+	 * The size of each list is padded to the next power of two (at most {@literal maxInListSize}) by repeating its last value,
+	 * so that the number of distinct statements, and thus of query plans, stays small.
+	 * The values are bound as parameters when the query is created by {@link BaseRepositoryImpl}, so that the statements
+	 * are reused for other values, otherwise they are literals.
+	 *
+	 * @param values        might be {@literal null}
+	 * @param maxInListSize maximum number of values of an {@literal IN} list
+	 * @return {@literal null} if there are no non {@literal null} values
+	 */
+	public static <E, T> Predicate toInPredicate(Root<E> root, CriteriaBuilder builder, String propertyName, Collection<T> values, int maxInListSize) {
+		if (values == null) {
+			return null;
+		}
+		if (maxInListSize <= 0) {
+			throw new IllegalArgumentException(String.format("maxInListSize must be positive : %d", maxInListSize));
+		}
+		Set<T> distinct = new LinkedHashSet<>(values);
+		distinct.remove(null);
+		if (distinct.isEmpty()) {
+			return null;
+		}
+		if (LOG.isDebugEnabled()) {
+			LOG.debug("{}.{} in {}", root.getJavaType().getSimpleName(), propertyName, distinct);
+		}
+		Expression<T> path = getPath(root, propertyName);
+		@SuppressWarnings("unchecked")
+		Class<T> type = (Class<T>) path.getJavaType();
+		List<Predicate> predicates = new ArrayList<>(distinct.size() / maxInListSize + 1);
+		List<Expression<?>> chunk = new ArrayList<>(Math.min(distinct.size(), maxInListSize));
+		T last = null;
+		for (T value : distinct) {
+			chunk.add(ParameterBindings.bind(builder, type, value));
+			last = value;
+			if (chunk.size() == maxInListSize) {
+				predicates.add(path.in(chunk.toArray(new Expression<?>[chunk.size()])));
+				chunk.clear();
+			}
+		}
+		if (!chunk.isEmpty()) {
+			int paddedSize = Math.min(Integer.highestOneBit(chunk.size() - 1) << 1, maxInListSize);
+			while (chunk.size() < paddedSize) {
+				chunk.add(ParameterBindings.bind(builder, type, last));
+			}
+			predicates.add(path.in(chunk.toArray(new Expression<?>[chunk.size()])));
+		}
+		return predicates.size() == 1 ? predicates.get(0) : builder.or(predicates.toArray(new Predicate[predicates.size()]));
+	}
+
+	/**
+	 * Resolves a property path, possibly dotted like {@literal category.parent.code}, validating each segment against the metamodel.
+	 * Associations are (inner) joined, an existing join of the same association is reused so that several predicates
+	 * on the same association of a query share one join.
+	 * For the queries created by {@link BaseRepositoryImpl} each path is resolved and validated once per query,
+	 * the predicates on the same property share the resolved path.
+	 *
+	 * @param from         the root or join the path starts from
+	 * @param propertyPath the property name or dotted property names
+	 * @return the path
+	 * @throws IllegalArgumentException if a segment of the path is not an attribute
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T> Path<T> getPath(From<?, ?> from, String propertyPath) {
+		return (Path<T>) ParameterBindings.path(from, propertyPath, PredicateUtils::resolvePath);
+	}
+
+	private static Path<?> resolvePath(From<?, ?> from, String propertyPath) {
+		int dot = propertyPath.indexOf('.');
+		if (dot < 0) {
+			return from.get(propertyPath);
+		}
+		Path<?> path = from;
+		int start = 0;
+		while (dot >= 0) {
+			path = getPathSegment(path, propertyPath, propertyPath.substring(start, dot));
+			start = dot + 1;
+			dot = propertyPath.indexOf('.', start);
+		}
+		ManagedType<?> type = managedType(path, propertyPath);
+		attribute(type, propertyPath, propertyPath.substring(start));
+		return path.get(propertyPath.substring(start));
+	}
+
+	private static Path<?> getPathSegment(Path<?> path, String propertyPath, String segment) {
+		Attribute<?, ?> attribute = attribute(managedType(path, propertyPath), propertyPath, segment);
+		if (!(path instanceof From) || !(attribute.isAssociation() || attribute.isCollection())) {
+			return path.get(segment);
+		}
+		From<?, ?> from = (From<?, ?>) path;
+		for (Join<?, ?> join : from.getJoins()) {
+			if (join.getJoinType() == JoinType.INNER && join.getAttribute().getName().equals(segment)) {
+				return join;
+			}
+		}
+		return from.join(segment);
+	}
+
+	private static Attribute<?, ?> attribute(ManagedType<?> type, String propertyPath, String segment) {
+		try {
+			return type.getAttribute(segment);
+		} catch (IllegalArgumentException e) {
+			throw new IllegalArgumentException(String.format("%s : %s has no attribute %s", propertyPath, type.getJavaType().getSimpleName(), segment), e);
+		}
+	}
+
+	private static ManagedType<?> managedType(Path<?> path, String propertyPath) {
+		Bindable<?> model = path.getModel();
+		Type<?> type;
+		if (model instanceof ManagedType) {
+			type = (ManagedType<?>) model;
+		} else if (model instanceof SingularAttribute) {
+			type = ((SingularAttribute<?, ?>) model).getType();
+		} else if (model instanceof PluralAttribute) {
+			type = ((PluralAttribute<?, ?, ?>) model).getElementType();
+		} else {
+			type = null;
+		}
+		if (!(type instanceof ManagedType)) {
+			throw new IllegalArgumentException(String.format("%s : %s is not a managed type", propertyPath, path.getJavaType().getSimpleName()));
+		}
+		return (ManagedType<?>) type;
+	}
+
 	/*------------------------------------- the inner enum code --------------------------------------------------*/
 	 
 	public enum ComparatorKeyword {
 		eq("=") {
 			@Override
-			public <E, T extends Comparable<? super T>> Predicate toPredicate(Root<E> root, CriteriaBuilder builder, String propertyName, T value) {
-				return builder.equal(root.<T> get(propertyName), value);
+			public Predicate toNumberPredicate(CriteriaBuilder builder, Expression<? extends Number> path, Number value) {
+				return builder.equal(path, value);
+			}
+
+			@Override
+			public <T extends Comparable<? super T>> Predicate toComparablePredicate(CriteriaBuilder builder, Expression<? extends T> path, T value) {
+				return builder.equal(path, value);
+			}
+
+			@Override
+			public Predicate toNumberPredicate(CriteriaBuilder builder, Expression<? extends Number> path, Expression<? extends Number> value) {
+				return builder.equal(path, value);
+			}
+
+			@Override
+			public <T extends Comparable<? super T>> Predicate toComparablePredicate(CriteriaBuilder builder, Expression<? extends T> path, Expression<? extends T> value) {
+				return builder.equal(path, value);
 			}
 		},
 		lt("<") {
 			@Override
-			public <E, T extends Comparable<? super T>> Predicate toPredicate(Root<E> root, CriteriaBuilder builder, String propertyName, T value) {
-				return createPredicate(root, propertyName, value, builder::lt, builder::lessThan);
+			public Predicate toNumberPredicate(CriteriaBuilder builder, Expression<? extends Number> path, Number value) {
+				return builder.lt(path, value);
+			}
+
+			@Override
+			public <T extends Comparable<? super T>> Predicate toComparablePredicate(CriteriaBuilder builder, Expression<? extends T> path, T value) {
+				return builder.lessThan(path, value);
+			}
+
+			@Override
+			public Predicate toNumberPredicate(CriteriaBuilder builder, Expression<? extends Number> path, Expression<? extends Number> value) {
+				return builder.lt(path, value);
+			}
+
+			@Override
+			public <T extends Comparable<? super T>> Predicate toComparablePredicate(CriteriaBuilder builder, Expression<? extends T> path, Expression<? extends T> value) {
+				return builder.lessThan(path, value);
 			}
 		},
 		gt(">") {
 			@Override
-			public <E, T extends Comparable<? super T>> Predicate toPredicate(Root<E> root, CriteriaBuilder builder, String propertyName, T value) {
-				return createPredicate(root, propertyName, value, builder::gt, builder::greaterThan);
+			public Predicate toNumberPredicate(CriteriaBuilder builder, Expression<? extends Number> path, Number value) {
+				return builder.gt(path, value);
+			}
+
+			@Override
+			public <T extends Comparable<? super T>> Predicate toComparablePredicate(CriteriaBuilder builder, Expression<? extends T> path, T value) {
+				return builder.greaterThan(path, value);
+			}
+
+			@Override
+			public Predicate toNumberPredicate(CriteriaBuilder builder, Expression<? extends Number> path, Expression<? extends Number> value) {
+				return builder.gt(path, value);
+			}
+
+			@Override
+			public <T extends Comparable<? super T>> Predicate toComparablePredicate(CriteriaBuilder builder, Expression<? extends T> path, Expression<? extends T> value) {
+				return builder.greaterThan(path, value);
 			}
 		},
 		le("<=") {
 			@Override
-			public <E, T extends Comparable<? super T>> Predicate toPredicate(Root<E> root, CriteriaBuilder builder, String propertyName, T value) {
-				return createPredicate(root, propertyName, value, builder::le, builder::lessThanOrEqualTo);
+			public Predicate toNumberPredicate(CriteriaBuilder builder, Expression<? extends Number> path, Number value) {
+				return builder.le(path, value);
+			}
+
+			@Override
+			public <T extends Comparable<? super T>> Predicate toComparablePredicate(CriteriaBuilder builder, Expression<? extends T> path, T value) {
+				return builder.lessThanOrEqualTo(path, value);
+			}
+
+			@Override
+			public Predicate toNumberPredicate(CriteriaBuilder builder, Expression<? extends Number> path, Expression<? extends Number> value) {
+				return builder.le(path, value);
+			}
+
+			@Override
+			public <T extends Comparable<? super T>> Predicate toComparablePredicate(CriteriaBuilder builder, Expression<? extends T> path, Expression<? extends T> value) {
+				return builder.lessThanOrEqualTo(path, value);
 			}
 		},
 		ge(">=") {
 			@Override
-			public <E, T extends Comparable<? super T>> Predicate toPredicate(Root<E> root, CriteriaBuilder builder, String propertyName, T value) {
-				return createPredicate(root, propertyName, value, builder::ge, builder::greaterThanOrEqualTo);
+			public Predicate toNumberPredicate(CriteriaBuilder builder, Expression<? extends Number> path, Number value) {
+				return builder.ge(path, value);
+			}
+
+			@Override
+			public <T extends Comparable<? super T>> Predicate toComparablePredicate(CriteriaBuilder builder, Expression<? extends T> path, T value) {
+				return builder.greaterThanOrEqualTo(path, value);
+			}
+
+			@Override
+			public Predicate toNumberPredicate(CriteriaBuilder builder, Expression<? extends Number> path, Expression<? extends Number> value) {
+				return builder.ge(path, value);
+			}
+
+			@Override
+			public <T extends Comparable<? super T>> Predicate toComparablePredicate(CriteriaBuilder builder, Expression<? extends T> path, Expression<? extends T> value) {
+				return builder.greaterThanOrEqualTo(path, value);
 			}
 		};
 
@@ -73,22 +294,31 @@ public class PredicateUtils {
 			return symbol;
 		}
 		
-		public abstract <E, T extends Comparable<? super T>> Predicate toPredicate (Root<E> root, CriteriaBuilder builder, String propertyName, T value);
-		
-		private static <E, T extends Comparable<? super T>> Predicate createPredicate(
-				Root<E> root,
-				String propertyName,
-				T value,
-				BiFunction<Expression<? extends Number>, Number, Predicate> numberFunction,
-				BiFunction<Expression<? extends T>, T, Predicate> comparableFunction
-				) {
+		public <E, T extends Comparable<? super T>> Predicate toPredicate (Root<E> root, CriteriaBuilder builder, String propertyName, T value) {
 			if (value instanceof Number) {
-				return numberFunction.apply(root.get(propertyName), (Number) value);
-			} else if (value instanceof Comparable) {
-				return comparableFunction.apply(root.get(propertyName), value);
-			} else {
-				throw new IllegalArgumentException(String.format("Unsupported type : %s", value.getClass().getName()));
+				return toNumberPredicate(builder, getPath(root, propertyName), (Number) value);
 			}
+			return toComparablePredicate(builder, PredicateUtils.<T> getPath(root, propertyName), value);
 		}
+		
+		/**
+		 * Compares numbers, using the numeric comparisons of the {@link CriteriaBuilder}.
+		 */
+		public abstract Predicate toNumberPredicate(CriteriaBuilder builder, Expression<? extends Number> path, Number value);
+		
+		/**
+		 * Compares other comparable values.
+		 */
+		public abstract <T extends Comparable<? super T>> Predicate toComparablePredicate(CriteriaBuilder builder, Expression<? extends T> path, T value);
+		
+		/**
+		 * Compares numbers to an expression, typically a {@link javax.persistence.criteria.ParameterExpression}.
+		 */
+		public abstract Predicate toNumberPredicate(CriteriaBuilder builder, Expression<? extends Number> path, Expression<? extends Number> value);
+		
+		/**
+		 * Compares other comparable values to an expression, typically a {@link javax.persistence.criteria.ParameterExpression}.
+		 */
+		public abstract <T extends Comparable<? super T>> Predicate toComparablePredicate(CriteriaBuilder builder, Expression<? extends T> path, Expression<? extends T> value);
 	} // end inner enum code
 }
@@ -0,0 +1,143 @@
+package org.adrian.java.utils.jpa;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Query results by key, evicting the least recently used results beyond the maximum size and the results older than
+ * their time to live. {@link #invalidate()} drops all results, e.g. on a write to the queried entity type.
+ * A transaction that invalidated the results reads without the cache until its completion, since it may read its own
+ * uncommitted writes.
+ */
+final class QueryCache {
+
+	private volatile int maxSize;
+	private final Map<Object, CachedResult> results;
+	// incremented by each invalidation, so that a result read before an invalidation is not cached after it
+	private final AtomicLong generation = new AtomicLong();
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+
+	QueryCache(int maxSize) {
+		this.maxSize = checkMaxSize(maxSize);
+		this.results = new LinkedHashMap<Object, CachedResult>(16, 0.75f, true) {
+
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Object, CachedResult> eldest) {
+				return size() > QueryCache.this.maxSize;
+			}
+		};
+	}
+
+	private static int checkMaxSize(int maxSize) {
+		if (maxSize < 0) {
+			throw new IllegalArgumentException(String.format("maxSize must not be negative : %d", maxSize));
+		}
+		return maxSize;
+	}
+
+	/**
+	 * Sets the maximum size, evicting the least recently used results beyond it.
+	 */
+	void setMaxSize(int maxSize) {
+		synchronized (results) {
+			this.maxSize = checkMaxSize(maxSize);
+			Iterator<CachedResult> eldest = results.values().iterator();
+			while (results.size() > maxSize) {
+				eldest.next();
+				eldest.remove();
+			}
+		}
+	}
+
+	/**
+	 * @param key   the key of the query, with stable equals and hashCode
+	 * @param ttl   how long the result is reused
+	 * @param query reads the result if it is not cached
+	 * @return the cached or read result
+	 */
+	@SuppressWarnings("unchecked")
+	<R> R get(Object key, Duration ttl, Supplier<R> query) {
+		if (TransactionSynchronizationManager.hasResource(this)) {
+			misses.increment();
+			return query.get();
+		}
+		long now = System.nanoTime();
+		CachedResult cached;
+		synchronized (results) {
+			cached = results.get(key);
+		}
+		if (cached != null && now - cached.expiresAt < 0) {
+			hits.increment();
+			return (R) cached.result;
+		}
+		misses.increment();
+		long readGeneration = generation.get();
+		R result = query.get();
+		synchronized (results) {
+			if (generation.get() == readGeneration) {
+				results.put(key, new CachedResult(result, now + ttl.toNanos()));
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Drops all results now and, within a transaction, again after its completion, since queries running meanwhile
+	 * still read the state before the write.
+	 */
+	void invalidate() {
+		clear();
+		// once per transaction
+		if (TransactionSynchronizationManager.isSynchronizationActive() && !TransactionSynchronizationManager.hasResource(this)) {
+			TransactionSynchronizationManager.bindResource(this, Boolean.TRUE);
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+
+				@Override
+				public void afterCompletion(int status) {
+					TransactionSynchronizationManager.unbindResourceIfPossible(QueryCache.this);
+					if (status != TransactionSynchronization.STATUS_ROLLED_BACK) {
+						clear();
+					}
+				}
+			});
+		}
+	}
+
+	private void clear() {
+		synchronized (results) {
+			generation.incrementAndGet();
+			results.clear();
+		}
+	}
+
+	long getHitCount() {
+		return hits.sum();
+	}
+
+	long getMissCount() {
+		return misses.sum();
+	}
+
+	private static final class CachedResult {
+
+		private final Object result;
+		private final long expiresAt;
+
+		private CachedResult(Object result, long expiresAt) {
+			this.result = result;
+			this.expiresAt = expiresAt;
+		}
+	}
+}
@@ -0,0 +1,36 @@
+package org.adrian.java.utils.jpa;
+
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.MappedSuperclass;
+
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+
+/**
+ * Alternative to {@link BaseEntity} for entities inserted in bulk: with {@link GenerationType#IDENTITY} the id is only
+ * known after each insert, which disables JDBC batching. Here the ids come from a sequence per entity
+ * ({@literal <table>_seq}) with a pooled-lo optimizer, so one sequence call reserves {@link #ALLOCATION_SIZE} ids
+ * and inserts can be batched, see {@link ExtendedRepository#insertAll(Iterable, int)}.
+ * <p>
+ * The sequences must be incremented by {@link #ALLOCATION_SIZE}.
+ */
+@MappedSuperclass
+public abstract class SequenceBaseEntity {
+
+	public static final int ALLOCATION_SIZE = 50;
+
+	@Id
+	@GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "pooled_sequence")
+	@GenericGenerator(name = "pooled_sequence", strategy = "enhanced-sequence", parameters = {
+			@Parameter(name = "prefer_sequence_per_entity", value = "true"),
+			@Parameter(name = "optimizer", value = "pooled-lo"),
+			@Parameter(name = "increment_size", value = "" + ALLOCATION_SIZE) })
+	private Long id;
+
+	public Long getId() {
+		return id;
+	}
+
+}
@@ -2,16 +2,27 @@ package org.adrian.java.utils.jpa;
 
 import org.adrian.java.utils.jpa.PredicateUtils.ComparatorKeyword;
 import org.springframework.data.jpa.domain.Specification;
-import org.springframework.data.jpa.domain.Specifications;
 import org.springframework.util.CollectionUtils;
 
 import javax.persistence.criteria.CriteriaBuilder;
 import javax.persistence.criteria.CriteriaQuery;
 import javax.persistence.criteria.Root;
+import javax.persistence.metamodel.ManagedType;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class SpecificationUtils {
 
+    /**
+     * Maximum number of filter shapes kept by {@link #toParameterSpecification(String, Comparable, ComparatorKeyword)}.
+     */
+    static final int MAX_CACHED_FILTERS = 256;
+
+    private static final Map<List<Object>, CompiledFilter<?, ?>> FILTERS = new ConcurrentHashMap<>();
+
     public static <E, T extends Comparable<? super T>> Specification<E> toSpecification(String propertyName, T value, ComparatorKeyword comparatorKeyword) {
         return (Root<E> root, CriteriaQuery<?> query, CriteriaBuilder builder) ->
                 PredicateUtils.toPredicate(root, builder, propertyName, value, comparatorKeyword);
@@ -22,19 +33,70 @@ public class SpecificationUtils {
                 PredicateUtils.toPredicate(root, builder, propertyName, value);
     }
 
-    public static <E, T extends Comparable<? super T>> Specification<E> toSpecification(String propertyName, List<T> values) {
-        if (CollectionUtils.isEmpty(values)) {
+    /**
+     * Same as {@link #toSpecification(String, Comparable, ComparatorKeyword)}, but the value is bound as a named parameter
+     * instead of a literal, see {@link CompiledFilter#bindParameter(Comparable)}.
+     * The filter is compiled once per shape (entity, property, keyword, value type) and then reused.
+     *
+     * @param value might be {@literal null}
+     * @return {@literal null} if {@literal value} is {@literal null}
+     */
+    public static <E, T extends Comparable<? super T>> Specification<E> toParameterSpecification(String propertyName, T value, ComparatorKeyword comparatorKeyword) {
+        if (value == null) {
             return null;
         }
-        Specifications<E> specifications = null;
-        for (T value : values) {
-            if (specifications == null) {
-                specifications = Specifications.where(toSpecification(propertyName, value));
-            } else {
-                specifications = specifications.or(toSpecification(propertyName, value));
+        Class<T> valueType = valueType(value);
+        return (Root<E> root, CriteriaQuery<?> query, CriteriaBuilder builder) ->
+                compiledFilter(root.getModel(), propertyName, comparatorKeyword, valueType)
+                        .bindParameter(value)
+                        .toPredicate(root, query, builder);
+    }
+
+    public static <E, T extends Comparable<? super T>> Specification<E> toParameterSpecification(String propertyName, T value) {
+        return toParameterSpecification(propertyName, value, ComparatorKeyword.eq);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> Class<T> valueType(T value) {
+        return (Class<T>) (value instanceof Enum ? ((Enum<?>) value).getDeclaringClass() : value.getClass());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <E, T extends Comparable<? super T>> CompiledFilter<E, T> compiledFilter(ManagedType<E> managedType, String propertyName,
+            ComparatorKeyword comparatorKeyword, Class<T> valueType) {
+        List<Object> key = Arrays.asList(managedType.getJavaType(), propertyName, comparatorKeyword, valueType);
+        CompiledFilter<E, T> filter = (CompiledFilter<E, T>) FILTERS.get(key);
+        if (filter == null) {
+            filter = CompiledFilter.compile(managedType, propertyName, comparatorKeyword, valueType);
+            // Property names built from user input must not grow the cache without bound.
+            if (FILTERS.size() < MAX_CACHED_FILTERS) {
+                FILTERS.putIfAbsent(key, filter);
             }
         }
-        return specifications;
+        return filter;
+    }
+
+    /**
+     * Calls {@link #toSpecification(String, List, int)} with {@link PredicateUtils#DEFAULT_MAX_IN_LIST_SIZE}.
+     */
+    public static <E, T extends Comparable<? super T>> Specification<E> toSpecification(String propertyName, List<T> values) {
+        return toSpecification(propertyName, values, PredicateUtils.DEFAULT_MAX_IN_LIST_SIZE);
+    }
+
+    /**
+     * Matches any of the values with {@literal IN} predicates, see {@link PredicateUtils#toInPredicate(Root, CriteriaBuilder, String, java.util.Collection, int)}.
+     *
+     * @param values        might be {@literal null}, {@literal null} elements are ignored
+     * @param maxInListSize maximum number of values of an {@literal IN} list
+     * @return {@literal null} if there are no values
+     */
+    public static <E, T extends Comparable<? super T>> Specification<E> toSpecification(String propertyName, List<T> values, int maxInListSize) {
+        if (CollectionUtils.isEmpty(values)) {
+            return null;
+        }
+        List<T> copy = new ArrayList<>(values);
+        return (Root<E> root, CriteriaQuery<?> query, CriteriaBuilder builder) ->
+                PredicateUtils.toInPredicate(root, builder, propertyName, copy, maxInListSize);
     }
 
 }
@@ -0,0 +1,326 @@
+package org.adrian.java.utils.springdata;
+
+import org.adrian.java.utils.jpa.PredicateUtils;
+import org.adrian.java.utils.jpa.PredicateUtils.ComparatorKeyword;
+import org.adrian.java.utils.jpa.SpecificationUtils;
+import org.springframework.beans.BeanWrapper;
+import org.springframework.beans.PropertyAccessorFactory;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Root;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Date;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * A keyset (seek) page request: instead of skipping {@literal pageNumber * pageSize} rows, the next page starts after
+ * the sort key of the last row of the previous page, so that the cost of a page does not depend on its depth.
+ * <p>
+ * The sort key is carried between requests by an opaque continuation token, see {@link #nextToken(Slice)}.
+ * The sort properties must not be {@literal null}, and must be {@link String}s, numbers, booleans, dates or enums.
+ * <p>
+ * Read the page as a {@link Slice}: a {@link org.springframework.data.domain.Page} would count all matching rows
+ * for every full page, which is the cost keyset paging avoids.
+ *
+ * <pre>
+ * KeysetPageRequest request = KeysetPageRequestBuilder.of(20, Sort.by("price").descending()).token(token).build();
+ * Slice&lt;Item&gt; items = itemRepository.findSlice(request.toSpecification(filter), request.pageable());
+ * String nextToken = request.nextToken(items);
+ * </pre>
+ *
+ * @author Marcus Adrian
+ */
+public class KeysetPageRequest {
+
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    private final int pageSize;
+    private final Sort sort;
+    private final List<Sort.Order> orders;
+    private final String token;
+    // the sort key of the last row of the previous page, null for the first page
+    private final Object[] keys;
+
+    KeysetPageRequest(int pageSize, Sort sort, String token) {
+        this.pageSize = pageSize;
+        this.sort = sort;
+        this.orders = sort.stream().collect(Collectors.toList());
+        this.token = token;
+        this.keys = token == null ? null : decode(token);
+    }
+
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    /**
+     * @return the sort, ending with the {@literal id} tiebreaker
+     */
+    public Sort getSort() {
+        return sort;
+    }
+
+    /**
+     * @return the continuation token this page starts after, {@literal null} for the first page
+     */
+    public String getToken() {
+        return token;
+    }
+
+    /**
+     * @return the decoded sort key the page starts after, {@literal null} for the first page
+     */
+    Object[] keys() {
+        return keys;
+    }
+
+    /**
+     * @return the pageable of this page, always the first page of the seek specification
+     */
+    public Pageable pageable() {
+        return PageRequest.of(0, pageSize, sort);
+    }
+
+    /**
+     * @param filter might be {@literal null}
+     * @return {@literal filter} restricted to the rows after the continuation token
+     */
+    public <E> Specification<E> toSpecification(Specification<E> filter) {
+        if (keys == null) {
+            return filter;
+        }
+        return Specification.where(filter).and(seekSpecification());
+    }
+
+    /**
+     * The rows after the keys in the sort order: {@literal p1 > k1 or (p1 = k1 and p2 > k2) or ...}.
+     */
+    private <E> Specification<E> seekSpecification() {
+        Specification<E> seek = null;
+        Specification<E> equalPrefix = null;
+        for (int i = 0; i < orders.size(); i++) {
+            Sort.Order order = orders.get(i);
+            ComparatorKeyword keyword = order.isAscending() ? ComparatorKeyword.gt : ComparatorKeyword.lt;
+            Specification<E> after = Specification.where(equalPrefix).and(keySpecification(order.getProperty(), keys[i], keyword));
+            seek = seek == null ? after : seek.or(after);
+            equalPrefix = Specification.where(equalPrefix).and(keySpecification(order.getProperty(), keys[i], ComparatorKeyword.eq));
+        }
+        return seek;
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private static <E> Specification<E> keySpecification(String property, Object key, ComparatorKeyword keyword) {
+        if (key instanceof EnumName) {
+            // the enum type is only known from the metamodel
+            return (Root<E> root, CriteriaQuery<?> query, CriteriaBuilder builder) -> {
+                Class enumType = PredicateUtils.getPath(root, property).getJavaType();
+                return SpecificationUtils.<E, Enum> toParameterSpecification(property, Enum.valueOf(enumType, ((EnumName) key).name), keyword)
+                        .toPredicate(root, query, builder);
+            };
+        }
+        return SpecificationUtils.toParameterSpecification(property, (Comparable) key, keyword);
+    }
+
+    /**
+     * @param slice this page, read with {@link #pageable()}
+     * @return the continuation token of the next page, {@literal null} if this page is the last one
+     */
+    public String nextToken(Slice<?> slice) {
+        return slice.hasNext() ? token(slice.getContent()) : null;
+    }
+
+    /**
+     * Without knowing if there is a next page, a full page is assumed to have one, so the last page may be empty.
+     *
+     * @param content the content of this page
+     * @return the continuation token of the next page, {@literal null} if this page is the last one
+     */
+    public String nextToken(List<?> content) {
+        return content.size() < pageSize ? null : token(content);
+    }
+
+    private String token(List<?> content) {
+        BeanWrapper last = PropertyAccessorFactory.forBeanPropertyAccess(content.get(content.size() - 1));
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(sort.toString().hashCode());
+            for (Sort.Order order : orders) {
+                writeKey(out, order.getProperty(), last.getPropertyValue(order.getProperty()));
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return ENCODER.encodeToString(bytes.toByteArray());
+    }
+
+    /**
+     * Writes the key with a tag of its exact type: the decoded key must have the same type and precision,
+     * a narrower or wider type cannot be compared to the sort property.
+     */
+    private static void writeKey(DataOutputStream out, String property, Object key) throws IOException {
+        if (key instanceof String) {
+            out.writeByte('S');
+            out.writeUTF((String) key);
+        } else if (key instanceof Integer) {
+            out.writeByte('I');
+            out.writeInt((Integer) key);
+        } else if (key instanceof Short) {
+            out.writeByte('H');
+            out.writeShort((Short) key);
+        } else if (key instanceof Byte) {
+            out.writeByte('Y');
+            out.writeByte((Byte) key);
+        } else if (key instanceof Long) {
+            out.writeByte('J');
+            out.writeLong((Long) key);
+        } else if (key instanceof Double) {
+            out.writeByte('D');
+            out.writeDouble((Double) key);
+        } else if (key instanceof Float) {
+            out.writeByte('F');
+            out.writeFloat((Float) key);
+        } else if (key instanceof BigDecimal) {
+            out.writeByte('B');
+            out.writeUTF(key.toString());
+        } else if (key instanceof BigInteger) {
+            out.writeByte('G');
+            out.writeUTF(key.toString());
+        } else if (key instanceof Boolean) {
+            out.writeByte('Z');
+            out.writeBoolean((Boolean) key);
+        } else if (key instanceof Timestamp) {
+            // the milliseconds and the nanoseconds overlap, the nanoseconds are set last
+            out.writeByte('P');
+            out.writeLong(((Timestamp) key).getTime());
+            out.writeInt(((Timestamp) key).getNanos());
+        } else if (key instanceof java.sql.Date) {
+            out.writeByte('K');
+            out.writeLong(((java.sql.Date) key).getTime());
+        } else if (key instanceof Time) {
+            out.writeByte('M');
+            out.writeLong(((Time) key).getTime());
+        } else if (key instanceof Date) {
+            out.writeByte('T');
+            out.writeLong(((Date) key).getTime());
+        } else if (key instanceof LocalDate) {
+            out.writeByte('L');
+            out.writeLong(((LocalDate) key).toEpochDay());
+        } else if (key instanceof LocalDateTime) {
+            out.writeByte('N');
+            out.writeLong(((LocalDateTime) key).toEpochSecond(ZoneOffset.UTC));
+            out.writeInt(((LocalDateTime) key).getNano());
+        } else if (key instanceof LocalTime) {
+            out.writeByte('O');
+            out.writeLong(((LocalTime) key).toNanoOfDay());
+        } else if (key instanceof Instant) {
+            out.writeByte('Q');
+            out.writeLong(((Instant) key).getEpochSecond());
+            out.writeInt(((Instant) key).getNano());
+        } else if (key instanceof Enum) {
+            out.writeByte('E');
+            out.writeUTF(((Enum<?>) key).name());
+        } else if (key == null) {
+            throw new IllegalStateException(String.format("Sort property %s is null", property));
+        } else {
+            throw new IllegalStateException(String.format("Unsupported type of sort property %s : %s", property, key.getClass().getName()));
+        }
+    }
+
+    private Object[] decode(String token) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(DECODER.decode(token)))) {
+            if (in.readInt() != sort.toString().hashCode()) {
+                throw new IllegalArgumentException(String.format("Token %s does not match sort %s", token, sort));
+            }
+            List<Object> values = new ArrayList<>();
+            for (int i = 0; i < orders.size(); i++) {
+                values.add(readKey(in));
+            }
+            return values.toArray();
+        } catch (IOException | IllegalArgumentException e) {
+            throw new IllegalArgumentException(String.format("Invalid token : %s", token), e);
+        }
+    }
+
+    private static Object readKey(DataInputStream in) throws IOException {
+        byte tag = in.readByte();
+        switch (tag) {
+            case 'S':
+                return in.readUTF();
+            case 'I':
+                return in.readInt();
+            case 'H':
+                return in.readShort();
+            case 'Y':
+                return in.readByte();
+            case 'J':
+                return in.readLong();
+            case 'D':
+                return in.readDouble();
+            case 'F':
+                return in.readFloat();
+            case 'B':
+                return new BigDecimal(in.readUTF());
+            case 'G':
+                return new BigInteger(in.readUTF());
+            case 'Z':
+                return in.readBoolean();
+            case 'P':
+                Timestamp timestamp = new Timestamp(in.readLong());
+                timestamp.setNanos(in.readInt());
+                return timestamp;
+            case 'K':
+                return new java.sql.Date(in.readLong());
+            case 'M':
+                return new Time(in.readLong());
+            case 'T':
+                return new Date(in.readLong());
+            case 'L':
+                return LocalDate.ofEpochDay(in.readLong());
+            case 'N':
+                return LocalDateTime.ofEpochSecond(in.readLong(), in.readInt(), ZoneOffset.UTC);
+            case 'O':
+                return LocalTime.ofNanoOfDay(in.readLong());
+            case 'Q':
+                return Instant.ofEpochSecond(in.readLong(), in.readInt());
+            case 'E':
+                return new EnumName(in.readUTF());
+            default:
+                throw new IOException(String.format("Unknown type tag %s", tag));
+        }
+    }
+
+    /**
+     * A decoded enum key, resolved against the type of its property.
+     */
+    private static final class EnumName {
+
+        private final String name;
+
+        private EnumName(String name) {
+            this.name = name;
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package org.adrian.java.utils.springdata;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+
+/**
+ * Builds {@link KeysetPageRequest}s, the keyset counterpart of {@link PageRequestBuilder}.
+ *
+ * @author Marcus Adrian
+ */
+public class KeysetPageRequestBuilder {
+
+    /**
+     * The tiebreaker appended to every sort, so that the sort key of a row is unique.
+     */
+    public static final String ID_PROPERTY = "id";
+
+    private int pageSize;
+    private Sort sort;
+    private String token;
+
+    private KeysetPageRequestBuilder() {
+    }
+
+    public static KeysetPageRequestBuilder of(int pageSize, Sort sort) {
+        KeysetPageRequestBuilder builder = new KeysetPageRequestBuilder();
+        builder.pageSize = pageSize;
+        builder.sort = sort;
+        return builder;
+    }
+
+    /**
+     * Takes the page size and sort of {@literal pageable}, its page number is ignored.
+     */
+    public static KeysetPageRequestBuilder of(Pageable pageable) {
+        return of(pageable.getPageSize(), pageable.getSort());
+    }
+
+    public KeysetPageRequestBuilder pageSize(int pageSize) {
+        this.pageSize = pageSize;
+        return this;
+    }
+
+    public KeysetPageRequestBuilder sort(Sort sort) {
+        this.sort = sort;
+        return this;
+    }
+
+    /**
+     * @param token the continuation token of the previous page, {@literal null} for the first page
+     */
+    public KeysetPageRequestBuilder token(String token) {
+        this.token = token;
+        return this;
+    }
+
+    /**
+     * @throws IllegalArgumentException if the sort ignores case, or the token is invalid or does not match the sort
+     */
+    public KeysetPageRequest build() {
+        if (pageSize < 1) {
+            throw new IllegalArgumentException("Page size must not be less than one!");
+        }
+        Sort keysetSort = sort == null ? Sort.unsorted() : sort;
+        for (Sort.Order order : keysetSort) {
+            if (order.isIgnoreCase()) {
+                throw new IllegalArgumentException(String.format("Sort property %s ignores case", order.getProperty()));
+            }
+        }
+        if (keysetSort.getOrderFor(ID_PROPERTY) == null) {
+            keysetSort = keysetSort.and(Sort.by(ID_PROPERTY));
+        }
+        return new KeysetPageRequest(pageSize, keysetSort, token);
+    }
+}
@@ -0,0 +1,146 @@
+package org.adrian.java.utils.transform;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * {@link UnknownIdHandler} that counts the unknown {@literal idValues} instead of logging each of them.
+ * The counts are logged at most once per {@literal reportInterval}, the report being triggered by a miss.
+ * One instance can be shared by several {@link EnumSupport}s, counts are kept per support.
+ *
+ * @author Marcus Adrian
+ */
+public class AggregatingUnknownIdHandler implements UnknownIdHandler {
+
+    private static final Logger LOG = LoggerFactory.getLogger(AggregatingUnknownIdHandler.class);
+
+    private static final int DEFAULT_MAX_TRACKED_IDS = 1000;
+
+    private final long reportIntervalNanos;
+
+    // Distinct unknown idValues counted per support, the others only add to the overflow count.
+    private final int maxTrackedIds;
+
+    private final AtomicLong nextReport;
+
+    private final Map<EnumSupport<?, ?>, Counters> countersBySupport = new ConcurrentHashMap<>();
+
+    /**
+     * @param reportInterval minimal duration between two reports, not {@literal null}
+     */
+    public AggregatingUnknownIdHandler(Duration reportInterval) {
+        this(reportInterval, DEFAULT_MAX_TRACKED_IDS);
+    }
+
+    /**
+     * @param reportInterval minimal duration between two reports, not {@literal null}
+     * @param maxTrackedIds  distinct unknown {@literal idValues} counted per support, further ones are counted as overflow
+     */
+    public AggregatingUnknownIdHandler(Duration reportInterval, int maxTrackedIds) {
+        Objects.requireNonNull(reportInterval, "reportInterval == null");
+        this.reportIntervalNanos = reportInterval.toNanos();
+        this.maxTrackedIds = maxTrackedIds;
+        this.nextReport = new AtomicLong(System.nanoTime());
+    }
+
+    @Override
+    public void onUnknownId(EnumSupport<?, ?> enumSupport, Object id) {
+        countersBySupport.computeIfAbsent(enumSupport, s -> new Counters()).increment(id);
+
+        long now = System.nanoTime();
+        long next = nextReport.get();
+        if (now - next >= 0 && nextReport.compareAndSet(next, now + reportIntervalNanos)) {
+            report();
+        }
+    }
+
+    /**
+     * Logs the counts of the supports which had unknown {@literal idValues} since the last report.
+     */
+    public void report() {
+        countersBySupport.forEach((enumSupport, counters) -> {
+            if (counters.dirty.getAndSet(false)) {
+                LOG.warn("{} : unknown values (with count) {}{}, supported values are : {}",
+                        enumSupport.getEnumType().getSimpleName(),
+                        counters.snapshot(),
+                        counters.overflow.sum() > 0 ? String.format(" and %d untracked", counters.overflow.sum()) : "",
+                        enumSupport.supportedIdValues());
+            }
+        });
+    }
+
+    /**
+     * The counts of the unknown {@literal idValues} of the passed in support since creation or the last {@link #reset()}.
+     *
+     * @param enumSupport not {@literal null}
+     * @return never {@literal null}, unmodifiable
+     */
+    public Map<Object, Long> getUnknownIdCounts(EnumSupport<?, ?> enumSupport) {
+        Counters counters = countersBySupport.get(enumSupport);
+        return counters != null ? counters.snapshot() : Collections.emptyMap();
+    }
+
+    /**
+     * The count of the unknown {@literal idValues} of the passed in support that exceeded {@literal maxTrackedIds}.
+     *
+     * @param enumSupport not {@literal null}
+     * @return the count
+     */
+    public long getUntrackedCount(EnumSupport<?, ?> enumSupport) {
+        Counters counters = countersBySupport.get(enumSupport);
+        return counters != null ? counters.overflow.sum() : 0;
+    }
+
+    /**
+     * Clears all counts.
+     */
+    public void reset() {
+        countersBySupport.clear();
+    }
+
+    private class Counters {
+
+        private final Map<Object, LongAdder> countsById = new ConcurrentHashMap<>();
+
+        private final LongAdder overflow = new LongAdder();
+
+        private final AtomicBoolean dirty = new AtomicBoolean();
+
+        private void increment(Object id) {
+            LongAdder count = countsById.get(id);
+            if (count == null) {
+                if (countsById.size() >= maxTrackedIds) {
+                    overflow.increment();
+                    markDirty();
+                    return;
+                }
+                count = countsById.computeIfAbsent(id, k -> new LongAdder());
+            }
+            count.increment();
+            markDirty();
+        }
+
+        private void markDirty() {
+            // read first to avoid contended writes under a miss storm
+            if (!dirty.get()) {
+                dirty.set(true);
+            }
+        }
+
+        private Map<Object, Long> snapshot() {
+            Map<Object, Long> snapshot = new LinkedHashMap<>();
+            countsById.forEach((id, count) -> snapshot.put(id, count.sum()));
+            return Collections.unmodifiableMap(snapshot);
+        }
+    }
+}
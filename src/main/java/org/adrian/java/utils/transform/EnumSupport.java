@@ -4,7 +4,13 @@ import org.adrian.java.utils.exception.UnknownEnumValueException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.lang.reflect.Array;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.function.Function;
 
 /**
@@ -28,8 +34,88 @@ public class EnumSupport<E extends Enum<E>, ID> {
     // Describes the enum conversion.
     private Function<E, ID> enumToId;
 
+    // The idValues indexed by the ordinal of their enum, null for enums not in enumValues.
+    private Object[] idsByOrdinal;
+
+    // The integral idValues indexed by the ordinal of their enum, only set if the idValues are integral.
+    private int[] intIdsByOrdinal;
+
+    // The idValues in order of the enumValues, unmodifiable.
+    private List<ID> allIdValues;
+
+    // The idValues in order of the enumValues except the onFailValue, unmodifiable.
+    private List<ID> idValuesExceptOnFailValue;
+
+    // Complements are computed by ordinal mask only if all ordinals fit in a long, and cached up to this number of masks.
+    private static final int MAX_CACHED_COMPLEMENTS = 64;
+
+    // Open addressing table of the complements by ordinal mask, at most half full so that probe sequences stay short.
+    private static final int COMPLEMENT_TABLE_BITS = 7;
+
+    // The idValues complements by ordinal mask, keyed by the primitive mask so that a lookup does not allocate.
+    private final AtomicReferenceArray<Complement<ID>> complementsByOrdinalMask = new AtomicReferenceArray<>(1 << COMPLEMENT_TABLE_BITS);
+
+    private final AtomicInteger cachedComplements = new AtomicInteger();
+
+    // The common type of the idValues if they are all Integer, Short or Byte, otherwise null.
+    private Class<?> integralIdType;
+
+    // The enums indexed by (idValue - denseIdOffset), only set if the integral idValues form a compact range.
+    private E[] enumsByDenseId;
+
+    // The smallest integral idValue, index 0 of enumsByDenseId.
+    private int denseIdOffset;
+
+    // Integral idValues are looked up in an array if their range is at most this size or DENSE_RANGE_FACTOR times the number of enums.
+    private static final int DENSE_MIN_RANGE = 64;
+
+    private static final int DENSE_RANGE_FACTOR = 4;
+
+    // Called by the fail-safe conversions for idValues without corresponding enum.
+    private UnknownIdHandler unknownIdHandler;
+
+    // The enums by the text of their idValues, built on first use.
+    private volatile TextLookup<E> enumsByText;
+
+    // The enums by the text of their idValues ignoring case, built on first use.
+    private volatile TextLookup<E> enumsByTextIgnoreCase;
+
+    // The idValues as displayed in error messages, computed on first use.
+    private String supportedIdValues;
+
     private static final Logger LOG = LoggerFactory.getLogger(EnumSupport.class);
 
+    // Shared so that default supports are found in the cache.
+    private static final Function<? extends Enum<?>, String> DEFAULT_FUNCTION = Enum::name;
+
+    /**
+     * Maximum number of {@literal enumToId} functions per enum class whose supports are kept by {@link #cached(Class, Function, Enum)}.
+     */
+    public static final int MAX_CACHED_FUNCTIONS = 16;
+
+    // The cached supports per enum class.
+    private static final ClassValue<CachedSupports> CACHE = new ClassValue<CachedSupports>() {
+        @Override
+        protected CachedSupports computeValue(Class<?> type) {
+            return new CachedSupports(type.getEnumConstants().length);
+        }
+    };
+
+    /**
+     * Logs a warning for every unknown {@literal idValue}, the default {@link UnknownIdHandler}.
+     */
+    public static final UnknownIdHandler LOG_EACH_UNKNOWN_ID = (enumSupport, id) -> LOG.warn(enumSupport.unknownIdMessage(id));
+
+    /**
+     * The enum class this instance is working with.
+     *
+     * @return never {@literal null}
+     */
+    @SuppressWarnings("unchecked")
+    public Class<E> getEnumType() {
+        return (Class<E>) enumValues.getClass().getComponentType();
+    }
+
     /**
      * The {@literal enumValues} this instance is working with.
      *
@@ -42,10 +128,10 @@ public class EnumSupport<E extends Enum<E>, ID> {
     /**
      * The {@literal idValues} in order of the {@literal enumValues}.
      *
-     * @return the non {@literal null} list of {@literal idValues}
+     * @return the non {@literal null}, unmodifiable list of {@literal idValues}
      */
     public List<ID> idValues() {
-        return addIdValues(new ArrayList<>());
+        return allIdValues;
     }
 
     /**
@@ -62,19 +148,67 @@ public class EnumSupport<E extends Enum<E>, ID> {
      * The {@literal idValues} in order of the {@literal enumValues} which are complement of {@literal enumValuesToSkip}.
      *
      * @param enumValuesToSkip not {@literal null}
-     * @return the non {@literal null} list of {@literal idValues}
+     * @return the non {@literal null}, unmodifiable list of {@literal idValues}
      */
     public List<ID> idValuesComplementOf(EnumSet<E> enumValuesToSkip) {
-        return addIdValuesComplementOf(new ArrayList<>(), enumValuesToSkip);
+        Objects.requireNonNull(enumValuesToSkip, "enumValuesToSkip == null");
+        if (idsByOrdinal.length > Long.SIZE) {
+            return Collections.unmodifiableList(addIdValuesComplementOf(new ArrayList<>(), enumValuesToSkip));
+        }
+        long mask = 0;
+        for (E e : enumValuesToSkip) {
+            // enums past the table are not among the enumValues, and would wrap around the shift
+            if (e.ordinal() < idsByOrdinal.length) {
+                mask |= 1L << e.ordinal();
+            }
+        }
+        return cachedComplementOf(mask);
+    }
+
+    private List<ID> cachedComplementOf(long ordinalMask) {
+        int slots = complementsByOrdinalMask.length();
+        // Fibonacci hashing spreads the low ordinal bits over the index bits
+        int index = (int) ((ordinalMask * 0x9E3779B97F4A7C15L) >>> (Long.SIZE - COMPLEMENT_TABLE_BITS));
+        for (int probe = 0; probe < slots; probe++) {
+            Complement<ID> cached = complementsByOrdinalMask.get(index);
+            if (cached == null) {
+                List<ID> complement = complementOf(ordinalMask);
+                if (cachedComplements.get() >= MAX_CACHED_COMPLEMENTS) {
+                    return complement;
+                }
+                Complement<ID> added = new Complement<>(ordinalMask, complement);
+                if (complementsByOrdinalMask.compareAndSet(index, null, added)) {
+                    cachedComplements.incrementAndGet();
+                    return complement;
+                }
+                // another thread took the slot, maybe for the same mask
+                cached = complementsByOrdinalMask.get(index);
+            }
+            if (cached.ordinalMask == ordinalMask) {
+                return cached.idValues;
+            }
+            index = (index + 1) & (slots - 1);
+        }
+        return complementOf(ordinalMask);
+    }
+
+    private List<ID> complementOf(long ordinalMask) {
+        List<ID> complement = new ArrayList<>(enumValues.length);
+        for (E e : enumValues) {
+            if ((ordinalMask & (1L << e.ordinal())) == 0) {
+                complement.add(toId(e));
+            }
+        }
+        return Collections.unmodifiableList(complement);
     }
 
     /**
      * The {@literal idValues} in order of the {@literal enumValues} except the {@literal onFailValue} (if not {@literal null}).
      *
-     * @return the non {@literal null} list of {@literal idValues}
+     * @return the non {@literal null}, unmodifiable list of {@literal idValues}
      */
     public List<ID> idValuesComplementOfOnFailValue() {
-        return addIdValuesComplementOfOnFailValue(new ArrayList<>());
+        return idValuesExceptOnFailValue;
     }
 
     /**
@@ -86,7 +220,8 @@ public class EnumSupport<E extends Enum<E>, ID> {
      */
     public <C extends Collection<ID>> C addIdValues(C coll) {
         Objects.requireNonNull(coll, "coll == null");
-        return addIdValues(coll, Arrays.asList(enumValues));
+        coll.addAll(allIdValues);
+        return coll;
     }
 
     /**
@@ -101,10 +236,9 @@ public class EnumSupport<E extends Enum<E>, ID> {
         Objects.requireNonNull(coll, "coll == null");
         Objects.requireNonNull(enumValues, "enumValues == null");
 
-        enumValues
-                .stream()
-                .map(e -> toId(e))
-                .forEach(coll::add);
+        for (E e : enumValues) {
+            coll.add(toId(e));
+        }
         return coll;
     }
 
@@ -120,11 +254,11 @@ public class EnumSupport<E extends Enum<E>, ID> {
         Objects.requireNonNull(coll, "coll == null");
         Objects.requireNonNull(enumValuesToSkip, "enumValuesToSkip == null");
 
-        Arrays.asList(enumValues)
-                .stream()
-                .filter(e -> !enumValuesToSkip.contains(e))
-                .map(e -> toId(e))
-                .forEach(coll::add);
+        for (E e : enumValues) {
+            if (!enumValuesToSkip.contains(e)) {
+                coll.add(toId(e));
+            }
+        }
         return coll;
     }
 
@@ -137,12 +271,8 @@ public class EnumSupport<E extends Enum<E>, ID> {
      */
     public <C extends Collection<ID>> C addIdValuesComplementOfOnFailValue(C coll) {
         Objects.requireNonNull(coll, "coll == null");
-
-        if (onFailValue != null) {
-            return addIdValuesComplementOf(coll, EnumSet.of(onFailValue));
-        } else {
-            return addIdValues(coll);
-        }
+        coll.addAll(idValuesExceptOnFailValue);
+        return coll;
     }
 
     /**
@@ -151,15 +281,84 @@ public class EnumSupport<E extends Enum<E>, ID> {
      * @param onFailValue default enum value to return if conversion fails
      */
     public EnumSupport(E[] enumValues, Function<E, ID> enumToId, E onFailValue) {
+        this(enumValues, enumToId, onFailValue, LOG_EACH_UNKNOWN_ID);
+    }
+
+    /**
+     * @param enumValues       {@literal values()}} or subset of them
+     * @param enumToId         function that specifies how to identify an enum
+     * @param onFailValue      default enum value to return if conversion fails
+     * @param unknownIdHandler called by the fail-safe conversions for unknown {@literal idValues}, e.g. an {@link AggregatingUnknownIdHandler}
+     */
+    public EnumSupport(E[] enumValues, Function<E, ID> enumToId, E onFailValue, UnknownIdHandler unknownIdHandler) {
         this.enumValues = enumValues;
         this.onFailValue = onFailValue;
         this.enumToId = enumToId;
+        this.unknownIdHandler = Objects.requireNonNull(unknownIdHandler, "unknownIdHandler == null");
         enumsById = new HashMap<>();
+        int maxOrdinal = -1;
+        for (E e : enumValues) {
+            maxOrdinal = Math.max(maxOrdinal, e.ordinal());
+        }
+        idsByOrdinal = new Object[maxOrdinal + 1];
         E previous;
+        ID id;
         for (E e : enumValues) {
-            previous = enumsById.put(enumToId.apply(e), e);
+            id = enumToId.apply(e);
+            previous = enumsById.put(id, e);
             if (previous != null) {
-                throw new IllegalArgumentException(String.format("Trying to store different values under the same key (%s) : %s, %s", enumToId.apply(e), previous, e));
+                throw new IllegalArgumentException(String.format("Trying to store different values under the same key (%s) : %s, %s", id, previous, e));
+            }
+            idsByOrdinal[e.ordinal()] = id;
+        }
+        List<ID> ids = new ArrayList<>(enumValues.length);
+        List<ID> idsExceptOnFailValue = new ArrayList<>(enumValues.length);
+        for (E e : enumValues) {
+            ids.add(toId(e));
+            if (e != onFailValue) {
+                idsExceptOnFailValue.add(toId(e));
+            }
+        }
+        allIdValues = Collections.unmodifiableList(ids);
+        idValuesExceptOnFailValue = Collections.unmodifiableList(idsExceptOnFailValue);
+        initIntegralIds();
+    }
+
+    /**
+     * Detects integral {@literal idValues} and, if their range is compact enough, indexes the enums in an array
+     * so that lookups by {@literal idValue} neither hash nor box.
+     */
+    @SuppressWarnings("unchecked")
+    private void initIntegralIds() {
+        if (enumsById.isEmpty()) {
+            return;
+        }
+        Class<?> type = null;
+        long min = Long.MAX_VALUE;
+        long max = Long.MIN_VALUE;
+        for (ID id : enumsById.keySet()) {
+            if (!(id instanceof Integer || id instanceof Short || id instanceof Byte)
+                    || (type != null && type != id.getClass())) {
+                return;
+            }
+            type = id.getClass();
+            min = Math.min(min, ((Number) id).longValue());
+            max = Math.max(max, ((Number) id).longValue());
+        }
+        integralIdType = type;
+        intIdsByOrdinal = new int[idsByOrdinal.length];
+        for (int i = 0; i < idsByOrdinal.length; i++) {
+            if (idsByOrdinal[i] != null) {
+                intIdsByOrdinal[i] = ((Number) idsByOrdinal[i]).intValue();
+            }
+        }
+
+        long range = max - min + 1;
+        if (range <= Math.max(DENSE_MIN_RANGE, (long) enumsById.size() * DENSE_RANGE_FACTOR)) {
+            denseIdOffset = (int) min;
+            enumsByDenseId = (E[]) Array.newInstance(getEnumType(), (int) range);
+            for (Map.Entry<ID, E> entry : enumsById.entrySet()) {
+                enumsByDenseId[((Number) entry.getKey()).intValue() - denseIdOffset] = entry.getValue();
             }
         }
     }
@@ -185,19 +384,79 @@ public class EnumSupport<E extends Enum<E>, ID> {
         if (id == null) {
             return null;
         }
-        E found = enumsById.get(id);
+        E found = findById(id);
+        if (found == null) {
+            unknownIdHandler.onUnknownId(this, id);
+            found = onFailValue;
+        }
+        return found;
+    }
+
+    /**
+     * Primitive variant of {@link #toEnumFailSafe(Object)} for integral {@literal idValues} ({@link Integer}, {@link Short} or {@link Byte}).
+     * Does not box if the {@literal idValues} form a compact range.
+     * Named apart from {@link #toEnumFailSafe(Object)}, so that {@literal char}, {@literal short} or {@literal byte} ids are not widened to it.
+     *
+     * @param id integral identifier for the enum
+     * @return the enum value, {@link #onFailValue} if there is none for {@literal id}
+     * @throws UnsupportedOperationException if the {@literal idValues} are not integral
+     */
+    public E toEnumFailSafeByInt(int id) {
+        E found = findByIntId(id);
         if (found == null) {
-            LOG.warn(errorMessage(id, enumValues));
+            unknownIdHandler.onUnknownId(this, id);
             found = onFailValue;
         }
         return found;
     }
 
-    private String errorMessage(ID value, Enum<?>... values) {
+    /**
+     * The message describing an unknown {@literal idValue}, as used for {@link UnknownEnumValueException}.
+     *
+     * @param id the unknown {@literal idValue}
+     * @return never {@literal null}
+     */
+    public String unknownIdMessage(Object id) {
         return String.format("%s : unknown value (%s), supported values are : %s",
-                values[0].getClass().getSimpleName(),
-                value,
-                addIdValues(new LinkedHashSet<>()));
+                getEnumType().getSimpleName(),
+                id,
+                supportedIdValues());
+    }
+
+    /**
+     * The {@literal idValues} as displayed in {@link #unknownIdMessage(Object)}, computed once.
+     *
+     * @return never {@literal null}
+     */
+    public String supportedIdValues() {
+        String supported = supportedIdValues;
+        if (supported == null) {
+            supported = addIdValues(new LinkedHashSet<>()).toString();
+            supportedIdValues = supported;
+        }
+        return supported;
+    }
+
+    private E findById(ID id) {
+        if (enumsByDenseId != null && id.getClass() == integralIdType) {
+            return findByIntId(((Number) id).intValue());
+        }
+        return enumsById.get(id);
+    }
+
+    private E findByIntId(int id) {
+        if (enumsByDenseId != null) {
+            int index = id - denseIdOffset;
+            return index >= 0 && index < enumsByDenseId.length ? enumsByDenseId[index] : null;
+        }
+        if (integralIdType == Integer.class) {
+            return enumsById.get(id);
+        } else if (integralIdType == Short.class) {
+            return id == (short) id ? enumsById.get((short) id) : null;
+        } else if (integralIdType == Byte.class) {
+            return id == (byte) id ? enumsById.get((byte) id) : null;
+        }
+        throw new UnsupportedOperationException(String.format("%s : idValues are not integral", getEnumType().getSimpleName()));
     }
 
 
@@ -212,13 +471,229 @@ public class EnumSupport<E extends Enum<E>, ID> {
         if (id == null) {
             return null;
         }
-        E found = enumsById.get(id);
+        E found = findById(id);
         if (found == null) {
-            throw new UnknownEnumValueException(errorMessage(id, enumValues));
+            throw new UnknownEnumValueException(unknownIdMessage(id));
         }
         return found;
     }
 
+    /**
+     * Primitive variant of {@link #toEnum(Object)} for integral {@literal idValues} ({@link Integer}, {@link Short} or {@link Byte}).
+     * Does not box if the {@literal idValues} form a compact range.
+     * Named apart from {@link #toEnum(Object)}, so that {@literal char}, {@literal short} or {@literal byte} ids are not widened to it.
+     *
+     * @param id integral identifier for the enum
+     * @return the corresponding enum
+     * @throws UnknownEnumValueException     if transformation fails because of incorrect {@literal id}.
+     * @throws UnsupportedOperationException if the {@literal idValues} are not integral
+     */
+    public E toEnumByInt(int id) {
+        E found = findByIntId(id);
+        if (found == null) {
+            throw new UnknownEnumValueException(unknownIdMessage(id));
+        }
+        return found;
+    }
+
+    /**
+     * Transforms the text in the range of {@literal text} in its corresponding enum.
+     * The text is matched against {@link String#valueOf(Object)} of the {@literal idValues}, without allocating.
+     *
+     * @param text  text containing the identifier for the enum
+     * @param start start of the identifier, inclusive
+     * @param end   end of the identifier, exclusive
+     * @return {@literal null} if {@literal text} is {@literal null}, otherwise the corresponding enum
+     * @throws UnknownEnumValueException if transformation fails because of incorrect identifier.
+     */
+    public E toEnum(CharSequence text, int start, int end) {
+        if (text == null) {
+            return null;
+        }
+        E found = textLookup().get(text, start, end);
+        if (found == null) {
+            throw new UnknownEnumValueException(unknownIdMessage(text.subSequence(start, end)));
+        }
+        return found;
+    }
+
+    /**
+     * Transforms the text in the range of {@literal chars} in its corresponding enum.
+     * The text is matched against {@link String#valueOf(Object)} of the {@literal idValues}, without allocating.
+     *
+     * @param chars characters containing the identifier for the enum
+     * @param start start of the identifier, inclusive
+     * @param end   end of the identifier, exclusive
+     * @return {@literal null} if {@literal chars} is {@literal null}, otherwise the corresponding enum
+     * @throws UnknownEnumValueException if transformation fails because of incorrect identifier.
+     */
+    public E toEnum(char[] chars, int start, int end) {
+        if (chars == null) {
+            return null;
+        }
+        E found = textLookup().get(chars, start, end);
+        if (found == null) {
+            throw new UnknownEnumValueException(unknownIdMessage(new String(chars, start, end - start)));
+        }
+        return found;
+    }
+
+    /**
+     * Transforms the UTF-8 encoded text in the range of {@literal utf8} in its corresponding enum.
+     * The text is matched against {@link String#valueOf(Object)} of the {@literal idValues}, without allocating.
+     * The position of the buffer is not changed.
+     *
+     * @param utf8  buffer containing the identifier for the enum
+     * @param start absolute start of the identifier, inclusive
+     * @param end   absolute end of the identifier, exclusive
+     * @return {@literal null} if {@literal utf8} is {@literal null}, otherwise the corresponding enum
+     * @throws UnknownEnumValueException if transformation fails because of incorrect identifier.
+     */
+    public E toEnum(ByteBuffer utf8, int start, int end) {
+        if (utf8 == null) {
+            return null;
+        }
+        E found = textLookup().get(utf8, start, end);
+        if (found == null) {
+            throw new UnknownEnumValueException(unknownIdMessage(decode(utf8, start, end)));
+        }
+        return found;
+    }
+
+    /**
+     * Fail safe variant of {@link #toEnum(CharSequence, int, int)}, returns {@link #onFailValue} if transformation fails because of incorrect identifier.
+     *
+     * @param text  text containing the identifier for the enum
+     * @param start start of the identifier, inclusive
+     * @param end   end of the identifier, exclusive
+     * @return {@literal null} if {@literal text} is {@literal null}, otherwise the enum value
+     */
+    public E toEnumFailSafe(CharSequence text, int start, int end) {
+        if (text == null) {
+            return null;
+        }
+        E found = textLookup().get(text, start, end);
+        if (found == null) {
+            unknownIdHandler.onUnknownId(this, text.subSequence(start, end).toString());
+            found = onFailValue;
+        }
+        return found;
+    }
+
+    /**
+     * Fail safe variant of {@link #toEnum(char[], int, int)}, returns {@link #onFailValue} if transformation fails because of incorrect identifier.
+     *
+     * @param chars characters containing the identifier for the enum
+     * @param start start of the identifier, inclusive
+     * @param end   end of the identifier, exclusive
+     * @return {@literal null} if {@literal chars} is {@literal null}, otherwise the enum value
+     */
+    public E toEnumFailSafe(char[] chars, int start, int end) {
+        if (chars == null) {
+            return null;
+        }
+        E found = textLookup().get(chars, start, end);
+        if (found == null) {
+            unknownIdHandler.onUnknownId(this, new String(chars, start, end - start));
+            found = onFailValue;
+        }
+        return found;
+    }
+
+    /**
+     * Fail safe variant of {@link #toEnum(ByteBuffer, int, int)}, returns {@link #onFailValue} if transformation fails because of incorrect identifier.
+     *
+     * @param utf8  buffer containing the identifier for the enum
+     * @param start absolute start of the identifier, inclusive
+     * @param end   absolute end of the identifier, exclusive
+     * @return {@literal null} if {@literal utf8} is {@literal null}, otherwise the enum value
+     */
+    public E toEnumFailSafe(ByteBuffer utf8, int start, int end) {
+        if (utf8 == null) {
+            return null;
+        }
+        E found = textLookup().get(utf8, start, end);
+        if (found == null) {
+            unknownIdHandler.onUnknownId(this, decode(utf8, start, end));
+            found = onFailValue;
+        }
+        return found;
+    }
+
+    private TextLookup<E> textLookup() {
+        TextLookup<E> lookup = enumsByText;
+        if (lookup == null) {
+            lookup = new TextLookup<>(textToEnum(), false);
+            enumsByText = lookup;
+        }
+        return lookup;
+    }
+
+    private static String decode(ByteBuffer utf8, int start, int end) {
+        ByteBuffer range = utf8.duplicate();
+        range.limit(end).position(start);
+        return StandardCharsets.UTF_8.decode(range).toString();
+    }
+
+    /**
+     * Transforms the textual {@literal id} in its corresponding enum, ignoring case and leading and trailing whitespace.
+     * The text is matched against {@link String#valueOf(Object)} of the {@literal idValues}, without allocating.
+     *
+     * @param id text identifying the enum
+     * @return {@literal null} if {@literal id} is {@literal null}, otherwise the corresponding enum
+     * @throws UnknownEnumValueException if transformation fails because of incorrect {@literal id}.
+     * @throws IllegalStateException     if {@literal idValues} are equal ignoring case
+     */
+    public E toEnumIgnoreCase(CharSequence id) {
+        if (id == null) {
+            return null;
+        }
+        E found = findByTextIgnoreCase(id);
+        if (found == null) {
+            throw new UnknownEnumValueException(unknownIdMessage(id));
+        }
+        return found;
+    }
+
+    /**
+     * Fail safe variant of {@link #toEnumIgnoreCase(CharSequence)}, returns {@link #onFailValue} if transformation fails because of incorrect {@literal id}.
+     *
+     * @param id text identifying the enum
+     * @return {@literal null} if {@literal id} is {@literal null}, otherwise the enum value
+     * @throws IllegalStateException if {@literal idValues} are equal ignoring case
+     */
+    public E toEnumFailSafeIgnoreCase(CharSequence id) {
+        if (id == null) {
+            return null;
+        }
+        E found = findByTextIgnoreCase(id);
+        if (found == null) {
+            unknownIdHandler.onUnknownId(this, id.toString());
+            found = onFailValue;
+        }
+        return found;
+    }
+
+    private E findByTextIgnoreCase(CharSequence id) {
+        TextLookup<E> lookup = enumsByTextIgnoreCase;
+        if (lookup == null) {
+            try {
+                lookup = new TextLookup<>(textToEnum(), true);
+            } catch (IllegalArgumentException e) {
+                throw new IllegalStateException(String.format("%s : %s", getEnumType().getSimpleName(), e.getMessage()), e);
+            }
+            enumsByTextIgnoreCase = lookup;
+        }
+        int start = TextLookup.trimStart(id, 0, id.length());
+        return lookup.get(id, start, TextLookup.trimEnd(id, start, id.length()));
+    }
+
+    private Map<String, E> textToEnum() {
+        Map<String, E> textToEnum = new HashMap<>();
+        enumsById.forEach((id, e) -> textToEnum.put(String.valueOf(id), e));
+        return textToEnum;
+    }
+
     /**
      * Creates a support instance that defaults to string {@literal ID} values provided by calling {@link Enum#name()}.
      *
@@ -230,13 +705,9 @@ public class EnumSupport<E extends Enum<E>, ID> {
         return new EnumSupport<E, String>(enumValues, EnumSupport.<E>getDefaultFunction(), onFailValue);
     }
 
+    @SuppressWarnings("unchecked")
     public static <E extends Enum<E>> Function<E, String> getDefaultFunction() {
-        return new Function<E, String>() {
-            @Override
-            public String apply(E e) {
-                return e.name();
-            }
-        };
+        return (Function<E, String>) DEFAULT_FUNCTION;
     }
 
     /**
@@ -251,17 +722,19 @@ public class EnumSupport<E extends Enum<E>, ID> {
 
     /**
      * Alternative construction, {@literal defaultSupport(SomeEnum.values())} and {@literal defaultSupport(SomeEnum.class)} are equivalent.
+     * The latter is created once and shared, see {@link #cached(Class, Function, Enum)}.
      *
      * @param clazz the {@link Enum} class
      * @return the default support
      * @see #defaultSupport(Enum[])
      */
     public static <E extends Enum<E>> EnumSupport<E, String> defaultSupport(Class<E> clazz) {
-        return defaultSupport(clazz.getEnumConstants());
+        return cached(clazz, EnumSupport.<E>getDefaultFunction(), null);
     }
 
     /**
      * Alternative construction, {@literal defaultSupport(SomeEnum.values(), onFailValue)} and {@literal defaultSupport(SomeEnum.class, onFailValue)} are equivalent.
+     * The latter is created once and shared, see {@link #cached(Class, Function, Enum)}.
      *
      * @param clazz       the {@link Enum} class
      * @param onFailValue default enum value to return if conversion fails
@@ -269,21 +742,119 @@ public class EnumSupport<E extends Enum<E>, ID> {
      * @see #defaultSupport(Enum[], Enum))
      */
     public static <E extends Enum<E>> EnumSupport<E, String> defaultSupport(Class<E> clazz, E onFailValue) {
-        return defaultSupport(clazz.getEnumConstants(), onFailValue);
+        return cached(clazz, EnumSupport.<E>getDefaultFunction(), onFailValue);
+    }
+
+    /**
+     * Calls {@link #cached(Class, Function, Enum)} with a {@literal null} {@literal onFailValue} value.
+     *
+     * @param clazz    the {@link Enum} class
+     * @param enumToId function that specifies how to identify an enum
+     * @return the shared support
+     */
+    public static <E extends Enum<E>, ID> EnumSupport<E, ID> cached(Class<E> clazz, Function<E, ID> enumToId) {
+        return cached(clazz, enumToId, null);
+    }
+
+    /**
+     * The support for all the values of {@literal clazz}, created on first call and shared afterwards.
+     * Supports are cached per {@literal enumToId} function, which is compared by identity:
+     * pass the same function instance (a constant or a method reference at a single call site) to share the support.
+     * At most {@link #MAX_CACHED_FUNCTIONS} functions are kept per enum class, beyond that a new support is created by each call,
+     * so that functions created per call do not grow the cache.
+     *
+     * @param clazz       the {@link Enum} class
+     * @param enumToId    function that specifies how to identify an enum
+     * @param onFailValue default enum value to return if conversion fails
+     * @return the shared support
+     */
+    @SuppressWarnings("unchecked")
+    public static <E extends Enum<E>, ID> EnumSupport<E, ID> cached(Class<E> clazz, Function<E, ID> enumToId, E onFailValue) {
+        Objects.requireNonNull(enumToId, "enumToId == null");
+        CachedSupports supports = CACHE.get(clazz);
+        AtomicReferenceArray<EnumSupport<?, ?>> byOnFailValue = enumToId == DEFAULT_FUNCTION ? supports.defaults : supports.byFunction.get(enumToId);
+        if (byOnFailValue == null) {
+            if (supports.byFunction.size() >= MAX_CACHED_FUNCTIONS) {
+                LOG.debug("{} : more than {} cached enumToId functions, support not cached", clazz.getSimpleName(), MAX_CACHED_FUNCTIONS);
+                return new EnumSupport<>(clazz.getEnumConstants(), enumToId, onFailValue);
+            }
+            byOnFailValue = supports.byFunction.computeIfAbsent(enumToId, key -> new AtomicReferenceArray<>(supports.defaults.length()));
+        }
+        int index = onFailValue == null ? 0 : onFailValue.ordinal() + 1;
+        EnumSupport<?, ?> support = byOnFailValue.get(index);
+        if (support == null) {
+            EnumSupport<?, ?> created = new EnumSupport<>(clazz.getEnumConstants(), enumToId, onFailValue);
+            support = byOnFailValue.compareAndSet(index, null, created) ? created : byOnFailValue.get(index);
+        }
+        return (EnumSupport<E, ID>) support;
+    }
+
+    /**
+     * The unmodifiable idValues complement of an ordinal mask.
+     */
+    private static final class Complement<ID> {
+
+        private final long ordinalMask;
+        private final List<ID> idValues;
+
+        private Complement(long ordinalMask, List<ID> idValues) {
+            this.ordinalMask = ordinalMask;
+            this.idValues = idValues;
+        }
+    }
+
+    /**
+     * The cached supports of an enum class, by {@literal onFailValue}: index 0 for {@literal null}, {@literal ordinal + 1} otherwise.
+     */
+    private static final class CachedSupports {
+
+        // of the default function, looked up without allocating
+        private final AtomicReferenceArray<EnumSupport<?, ?>> defaults;
+        // by identity of the enumToId function, bounded by MAX_CACHED_FUNCTIONS
+        private final Map<Function<?, ?>, AtomicReferenceArray<EnumSupport<?, ?>>> byFunction = new ConcurrentHashMap<>();
+
+        private CachedSupports(int enumCount) {
+            this.defaults = new AtomicReferenceArray<>(enumCount + 1);
+        }
     }
 
     /**
      * Transforms the enum to its corresponding {@literal id} value.
+     * The {@literal idValues} of the {@literal enumValues} are precomputed, only other enums are passed to the {@literal enumToId} function.
      *
-     * @param e
-     * @return
+     * @param e might be {@literal null}
+     * @return {@literal null} if {@literal e} is {@literal null}, otherwise the {@literal idValue}
      */
+    @SuppressWarnings("unchecked")
     public ID toId(E e) {
         if (e == null) {
             return null;
         }
+        int ordinal = e.ordinal();
+        if (ordinal < idsByOrdinal.length && idsByOrdinal[ordinal] != null) {
+            return (ID) idsByOrdinal[ordinal];
+        }
         return enumToId.apply(e);
     }
 
+    /**
+     * Primitive variant of {@link #toId(Enum)} for integral {@literal idValues} ({@link Integer}, {@link Short} or {@link Byte}).
+     *
+     * @param e not {@literal null}
+     * @return the {@literal idValue} as {@literal int}
+     * @throws UnsupportedOperationException if the {@literal idValues} are not integral
+     */
+    public int toIntId(E e) {
+        Objects.requireNonNull(e, "e == null");
+        if (intIdsByOrdinal == null) {
+            throw new UnsupportedOperationException(String.format("%s : idValues are not integral", e.getDeclaringClass().getSimpleName()));
+        }
+        int ordinal = e.ordinal();
+        if (ordinal < idsByOrdinal.length && idsByOrdinal[ordinal] != null) {
+            return intIdsByOrdinal[ordinal];
+        }
+        return ((Number) enumToId.apply(e)).intValue();
+    }
+
 }
 
@@ -1,21 +1,70 @@
 package org.adrian.java.utils.transform;
 
 import lombok.NonNull;
-import lombok.RequiredArgsConstructor;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.Iterator;
 import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Spliterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.function.Supplier;
+import java.util.stream.Stream;
 
-@RequiredArgsConstructor
 public class GenericTransformer<S, T> implements Function<S, T>, BiConsumer<S, T> {
 
+    /**
+     * Number of source objects below which {@link #applyParallel(Collection)} transforms sequentially.
+     */
+    public static final int DEFAULT_PARALLEL_THRESHOLD = 1024;
+
     private final Supplier<T> targetSupplier;
     private final BiConsumer<S, T> updater;
+    // Set instead of the updater for transformers taking part in a TransformationContext.
+    private final ContextualUpdater<S, T> contextualUpdater;
+
+    public GenericTransformer(Supplier<T> targetSupplier, BiConsumer<S, T> updater) {
+        this.targetSupplier = targetSupplier;
+        this.updater = updater;
+        this.contextualUpdater = null;
+    }
+
+    /**
+     * Creates a transformer whose updater gets the {@link TransformationContext} to pass on to nested transformers.
+     *
+     * @param targetSupplier creates the target objects
+     * @param updater        updates a target with the source attributes
+     */
+    public GenericTransformer(Supplier<T> targetSupplier, ContextualUpdater<S, T> updater) {
+        this.targetSupplier = targetSupplier;
+        this.updater = null;
+        this.contextualUpdater = updater;
+    }
+
+    /**
+     * Updater which transforms referenced objects through a {@link TransformationContext}.
+     *
+     * @param <S> the source type
+     * @param <T> the target type
+     */
+    @FunctionalInterface
+    public interface ContextualUpdater<S, T> {
+
+        /**
+         * @param source  not {@code null}
+         * @param target  not {@code null}
+         * @param context not {@code null}, to pass to {@link GenericTransformer#apply(Object, TransformationContext)} of nested transformers
+         */
+        void accept(S source, T target, TransformationContext context);
+    }
 
     /**
      * Updates target with the source attributes.
@@ -46,6 +95,59 @@ public class GenericTransformer<S, T> implements Function<S, T>, BiConsumer<S, T
         }
     }
 
+    /**
+     * Transforms a single source object into a target object, unless the context already holds the target object of this transformer
+     * for the very same (identical) source object. The target object is registered before being updated, so cyclic references
+     * resolve to the target object being transformed.
+     *
+     * @param source  might be {@code null}
+     * @param context might be {@code null}, in which case there is no memoization
+     * @return {@code null} if source is {@code null}, otherwise the transformed object
+     */
+    public T apply(S source, TransformationContext context) {
+        if (source == null) {
+            return null;
+        }
+        if (context == null) {
+            return apply(source);
+        }
+        T target = context.get(this, source);
+        if (target == null) {
+            target = targetSupplier.get();
+            context.put(this, source, target);
+            doTransform(source, target, context);
+        }
+        return target;
+    }
+
+    /**
+     * Transforms a collection of source objects into target objects, identical source objects are transformed only once.
+     *
+     * @param sources might be {@code null}
+     * @param context might be {@code null}, in which case there is no memoization
+     * @return never {@code null} unless sources is {@code null}
+     */
+    public List<T> apply(Collection<? extends S> sources, TransformationContext context) {
+        if (sources == null) {
+            return null;
+        }
+        List<T> targets = new ArrayList<>(sources.size());
+        for (S source : sources) {
+            targets.add(apply(source, context));
+        }
+        return targets;
+    }
+
+    /**
+     * Calls {@link #apply(Collection, TransformationContext)} with a new context, scoped to this call.
+     *
+     * @param sources might be {@code null}
+     * @return never {@code null} unless sources is {@code null}
+     */
+    public List<T> applyMemoized(Collection<? extends S> sources) {
+        return apply(sources, new TransformationContext());
+    }
+
     /**
      * Transforms a collection of source objects into target objects.
      *
@@ -57,7 +159,7 @@ public class GenericTransformer<S, T> implements Function<S, T>, BiConsumer<S, T
         if (sources == null) {
             return null;
         }
-        List<T> target = apply(sources, new ArrayList<>());
+        List<T> target = apply(sources, new ArrayList<>(sources.size()));
         if (sort != null) {
             target.sort(sort);
         }
@@ -90,7 +192,365 @@ public class GenericTransformer<S, T> implements Function<S, T>, BiConsumer<S, T
         return targets;
     }
 
+    /**
+     * Transforms the sources objects into the passed in targets array, starting at index 0.
+     *
+     * @param sources might be {@code null}
+     * @param targets not {@code null}, at least as long as {@code sources}
+     * @return the passed in {@code targets} parameter to enable a fluent programming style
+     * @throws IllegalArgumentException if {@code targets} is too short
+     */
+    public T[] apply(Collection<? extends S> sources, @NonNull T[] targets) {
+        if (sources != null) {
+            if (sources.size() > targets.length) {
+                throw new IllegalArgumentException(String.format("targets too short : %d < %d", targets.length, sources.size()));
+            }
+            int i = 0;
+            for (S source : sources) {
+                targets[i++] = apply(source);
+            }
+        }
+        return targets;
+    }
+
+    /**
+     * Transforms the sources objects reusing the target objects of the passed in list:
+     * the n-th target is updated with the n-th source, missing targets are created and surplus targets removed.
+     *
+     * @param sources might be {@code null}, handled as empty
+     * @param targets not {@code null}, modifiable
+     * @return the passed in {@code targets} parameter to enable a fluent programming style
+     */
+    public List<T> applyReusing(Collection<? extends S> sources, @NonNull List<T> targets) {
+        int i = 0;
+        if (sources != null) {
+            int reusable = targets.size();
+            T target;
+            for (S source : sources) {
+                if (i < reusable) {
+                    target = targets.get(i);
+                    if (source == null) {
+                        targets.set(i, null);
+                    } else if (target == null) {
+                        targets.set(i, apply(source));
+                    } else {
+                        doTransform(source, target);
+                    }
+                } else {
+                    targets.add(apply(source));
+                }
+                i++;
+            }
+        }
+        if (i < targets.size()) {
+            targets.subList(i, targets.size()).clear();
+        }
+        return targets;
+    }
+
+    /**
+     * Transforms a collection of source objects and keeps only the first {@code limit} target objects according to {@code sort}.
+     * The result is the same as the first {@code limit} elements of {@link #apply(Collection, Comparator)}, including the
+     * order of equal targets, which stay in the order of their sources,
+     * but the full list is neither materialized nor sorted: the targets are kept in a bounded heap.
+     * Each source object is transformed into a new target object, targets are never reused.
+     *
+     * @param sources might be {@code null}, {@code null} elements are transformed to {@code null} targets
+     *                which are ordered by {@code sort} like any other target
+     * @param sort    order function for the target list, not {@code null}
+     * @param limit   maximum size of the target list
+     * @return never {@code null} unless sources is {@code null}
+     */
+    public List<T> apply(Collection<? extends S> sources, @NonNull Comparator<? super T> sort, int limit) {
+        if (sources == null) {
+            return null;
+        }
+        if (limit <= 0) {
+            return new ArrayList<>();
+        }
+        // a priority queue is not stable, ties are broken by the index of the source
+        Comparator<Ranked<T>> order = (a, b) -> {
+            int c = sort.compare(a.target, b.target);
+            return c != 0 ? c : Integer.compare(a.index, b.index);
+        };
+        // the head of the heap is the greatest retained target, the first to be evicted
+        PriorityQueue<Ranked<T>> heap = new PriorityQueue<>(Math.min(limit, sources.size()) + 1, order.reversed());
+        int index = 0;
+        for (S source : sources) {
+            T target = apply(source);
+            if (heap.size() < limit) {
+                heap.add(new Ranked<>(target, index));
+            } else if (sort.compare(target, heap.peek().target) < 0) {
+                // an equal target comes after the retained one, its source comes later
+                heap.poll();
+                heap.add(new Ranked<>(target, index));
+            }
+            index++;
+        }
+        List<Ranked<T>> ranked = new ArrayList<>(heap);
+        ranked.sort(order);
+        List<T> targets = new ArrayList<>(ranked.size());
+        for (Ranked<T> r : ranked) {
+            targets.add(r.target);
+        }
+        return targets;
+    }
+
+    /**
+     * A target with the index of its source.
+     */
+    private static final class Ranked<T> {
+
+        private final T target;
+        private final int index;
+
+        private Ranked(T target, int index) {
+            this.target = target;
+            this.index = index;
+        }
+    }
+
+    /**
+     * Transforms a stream of source objects lazily, each source object is transformed when the target stream consumes it.
+     *
+     * @param sources might be {@code null}
+     * @return never {@code null} unless sources is {@code null}
+     */
+    public Stream<T> apply(Stream<? extends S> sources) {
+        return sources != null ? sources.map(this::apply) : null;
+    }
+
+    /**
+     * Transforms the source objects lazily, each source object is transformed when the target iterator returns it.
+     *
+     * @param sources might be {@code null}
+     * @return never {@code null} unless sources is {@code null}
+     */
+    public Iterator<T> apply(Iterator<? extends S> sources) {
+        if (sources == null) {
+            return null;
+        }
+        return new Iterator<T>() {
+            @Override
+            public boolean hasNext() {
+                return sources.hasNext();
+            }
+
+            @Override
+            public T next() {
+                return apply(sources.next());
+            }
+
+            @Override
+            public void remove() {
+                sources.remove();
+            }
+        };
+    }
+
+    /**
+     * Transforms the source objects lazily, each source object is transformed when the target spliterator passes it on.
+     * The target spliterator splits as the source spliterator does, it is neither {@link Spliterator#SORTED} nor {@link Spliterator#DISTINCT}.
+     *
+     * @param sources might be {@code null}
+     * @return never {@code null} unless sources is {@code null}
+     */
+    public Spliterator<T> apply(Spliterator<? extends S> sources) {
+        return sources != null ? new TransformingSpliterator(sources) : null;
+    }
+
+    /**
+     * Transforms the source objects and passes the target objects on to the {@code sink} in lists of {@code chunkSize} elements
+     * (the last one possibly being smaller), so that only one chunk of target objects is held in memory at a time.
+     *
+     * @param sources   might be {@code null}, handled as empty
+     * @param chunkSize maximum size of the lists passed to the sink
+     * @param sink      not {@code null}, gets a new list for each chunk
+     * @return the number of transformed source objects
+     */
+    public long applyInChunks(Iterator<? extends S> sources, int chunkSize, @NonNull Consumer<? super List<T>> sink) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException(String.format("chunkSize must be positive : %d", chunkSize));
+        }
+        long count = 0;
+        if (sources == null) {
+            return count;
+        }
+        List<T> chunk = new ArrayList<>(chunkSize);
+        while (sources.hasNext()) {
+            chunk.add(apply(sources.next()));
+            count++;
+            if (chunk.size() == chunkSize) {
+                sink.accept(chunk);
+                chunk = new ArrayList<>(chunkSize);
+            }
+        }
+        if (!chunk.isEmpty()) {
+            sink.accept(chunk);
+        }
+        return count;
+    }
+
+    /**
+     * Calls {@link #applyInChunks(Iterator, int, Consumer)} with the iterator of the stream.
+     *
+     * @param sources   might be {@code null}, handled as empty
+     * @param chunkSize maximum size of the lists passed to the sink
+     * @param sink      not {@code null}, gets a new list for each chunk
+     * @return the number of transformed source objects
+     */
+    public long applyInChunks(Stream<? extends S> sources, int chunkSize, @NonNull Consumer<? super List<T>> sink) {
+        return applyInChunks(sources != null ? sources.iterator() : null, chunkSize, sink);
+    }
+
+    private class TransformingSpliterator implements Spliterator<T> {
+
+        private final Spliterator<? extends S> sources;
+
+        private TransformingSpliterator(Spliterator<? extends S> sources) {
+            this.sources = sources;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super T> action) {
+            return sources.tryAdvance(source -> action.accept(apply(source)));
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super T> action) {
+            sources.forEachRemaining(source -> action.accept(apply(source)));
+        }
+
+        @Override
+        public Spliterator<T> trySplit() {
+            Spliterator<? extends S> split = sources.trySplit();
+            return split != null ? new TransformingSpliterator(split) : null;
+        }
+
+        @Override
+        public long estimateSize() {
+            return sources.estimateSize();
+        }
+
+        @Override
+        public int characteristics() {
+            return sources.characteristics() & ~(Spliterator.SORTED | Spliterator.DISTINCT);
+        }
+    }
+
+    /**
+     * Calls {@link #applyParallel(Collection, Comparator, ForkJoinPool, int)} without sorting, in the common pool
+     * and with the {@link #DEFAULT_PARALLEL_THRESHOLD}.
+     *
+     * @param sources might be {@code null}
+     * @return never {@code null} unless sources is {@code null}
+     */
+    public List<T> applyParallel(Collection<? extends S> sources) {
+        return applyParallel(sources, null, ForkJoinPool.commonPool(), DEFAULT_PARALLEL_THRESHOLD);
+    }
+
+    /**
+     * Transforms a collection of source objects into target objects in parallel, the updater must be thread-safe.
+     * The sources are split in chunks of at most {@code threshold} elements, each chunk is transformed (and sorted) by a task
+     * writing to its own range of the result, sorted chunks are merged when joined. The order of the sources is preserved
+     * as far as {@code sort} does not decide otherwise, the sort is stable.
+     *
+     * @param sources   might be {@code null}
+     * @param sort      order function for the target list, might be {@code null}
+     * @param pool      the pool executing the tasks, not {@code null}
+     * @param threshold maximum number of source objects transformed by a task
+     * @return never {@code null} unless sources is {@code null}
+     */
+    @SuppressWarnings("unchecked")
+    public List<T> applyParallel(Collection<? extends S> sources, Comparator<? super T> sort, @NonNull ForkJoinPool pool, int threshold) {
+        if (sources == null) {
+            return null;
+        }
+        if (sources.size() <= Math.max(threshold, 1)) {
+            return apply(sources, sort);
+        }
+        Object[] targets = sources.toArray();
+        pool.invoke(new ParallelTransform(targets, sort != null ? new Object[targets.length] : null,
+                (Comparator<Object>) sort, Math.max(threshold, 1), 0, targets.length));
+        return new ArrayList<>(Arrays.asList((T[]) targets));
+    }
+
+    /**
+     * Transforms the sources in {@code [from, to)} of the array in place, then sorts the range if a comparator is given.
+     */
+    private class ParallelTransform extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Object[] array;
+        private final Object[] buffer;
+        private final Comparator<Object> sort;
+        private final int threshold;
+        private final int from;
+        private final int to;
+
+        private ParallelTransform(Object[] array, Object[] buffer, Comparator<Object> sort, int threshold, int from, int to) {
+            this.array = array;
+            this.buffer = buffer;
+            this.sort = sort;
+            this.threshold = threshold;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        protected void compute() {
+            if (to - from <= threshold) {
+                for (int i = from; i < to; i++) {
+                    array[i] = apply((S) array[i]);
+                }
+                if (sort != null) {
+                    Arrays.sort(array, from, to, sort);
+                }
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new ParallelTransform(array, buffer, sort, threshold, from, mid),
+                    new ParallelTransform(array, buffer, sort, threshold, mid, to));
+            if (sort != null) {
+                merge(mid);
+            }
+        }
+
+        private void merge(int mid) {
+            System.arraycopy(array, from, buffer, from, to - from);
+            int left = from;
+            int right = mid;
+            int i = from;
+            while (left < mid && right < to) {
+                // left first on equality keeps the sort stable
+                array[i++] = sort.compare(buffer[right], buffer[left]) < 0 ? buffer[right++] : buffer[left++];
+            }
+            while (left < mid) {
+                array[i++] = buffer[left++];
+            }
+            while (right < to) {
+                array[i++] = buffer[right++];
+            }
+        }
+    }
+
     private void doTransform(S source, T target) {
-        updater.accept(source, target);
+        if (contextualUpdater != null) {
+            TransformationContext context = new TransformationContext();
+            context.put(this, source, target);
+            contextualUpdater.accept(source, target, context);
+        } else {
+            updater.accept(source, target);
+        }
+    }
+
+    private void doTransform(S source, T target, TransformationContext context) {
+        if (contextualUpdater != null) {
+            contextualUpdater.accept(source, target, context);
+        } else {
+            updater.accept(source, target);
+        }
     }
 }
@@ -0,0 +1,209 @@
+package org.adrian.java.utils.transform;
+
+import org.springframework.beans.BeanUtils;
+import org.springframework.util.ClassUtils;
+
+import java.beans.PropertyDescriptor;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Builds a {@link GenericTransformer} from declared property mappings instead of a hand-written updater.
+ * Properties declared by name are resolved and type checked when building.
+ * <p>
+ * Each {@link #build()} generates a class copying the values of its mappings, which invokes the accessors directly
+ * rather than by reflection, see {@link UpdaterGenerator}. Its call sites are not shared with other transformers, so the
+ * JIT can inline them as in a hand-written updater, {@code GenericTransformerBenchmark} in the tests compares both.
+ *
+ * <pre>
+ * GenericTransformer&lt;Item, ItemDto&gt; transformer = GenericTransformerBuilder.of(Item.class, ItemDto.class, ItemDto::new)
+ *         .property("name")
+ *         .map(Item::getPrice, ItemDto::setPrice)
+ *         .build();
+ * </pre>
+ *
+ * @param <S> the source type
+ * @param <T> the target type
+ * @author Marcus Adrian
+ */
+public class GenericTransformerBuilder<S, T> {
+
+    private final Class<S> sourceClass;
+    private final Class<T> targetClass;
+    private final Supplier<T> targetSupplier;
+    private final List<PropertyMapping<S, T>> mappings = new ArrayList<>();
+
+    private GenericTransformerBuilder(Class<S> sourceClass, Class<T> targetClass, Supplier<T> targetSupplier) {
+        this.sourceClass = sourceClass;
+        this.targetClass = targetClass;
+        this.targetSupplier = targetSupplier;
+    }
+
+    /**
+     * @param sourceClass    not {@literal null}
+     * @param targetClass    not {@literal null}
+     * @param targetSupplier creates the target objects, not {@literal null}
+     * @return the builder
+     */
+    public static <S, T> GenericTransformerBuilder<S, T> of(Class<S> sourceClass, Class<T> targetClass, Supplier<T> targetSupplier) {
+        Objects.requireNonNull(sourceClass, "sourceClass == null");
+        Objects.requireNonNull(targetClass, "targetClass == null");
+        Objects.requireNonNull(targetSupplier, "targetSupplier == null");
+        return new GenericTransformerBuilder<>(sourceClass, targetClass, targetSupplier);
+    }
+
+    /**
+     * Maps the source property to the target property of the same name.
+     *
+     * @param propertyName not {@literal null}
+     * @return this builder
+     * @throws IllegalArgumentException if a property is missing or the types are not compatible
+     */
+    public GenericTransformerBuilder<S, T> property(String propertyName) {
+        return property(propertyName, propertyName);
+    }
+
+    /**
+     * Maps the source property to the target property.
+     *
+     * @param sourcePropertyName not {@literal null}
+     * @param targetPropertyName not {@literal null}
+     * @return this builder
+     * @throws IllegalArgumentException if a property is missing or the types are not compatible
+     */
+    public GenericTransformerBuilder<S, T> property(String sourcePropertyName, String targetPropertyName) {
+        Method readMethod = accessor(sourceClass, sourcePropertyName, true);
+        Method writeMethod = accessor(targetClass, targetPropertyName, false);
+        Class<?> sourceType = readMethod.getReturnType();
+        Class<?> targetType = writeMethod.getParameterTypes()[0];
+        if (!ClassUtils.isAssignable(targetType, sourceType)) {
+            throw new IllegalArgumentException(String.format("%s.%s (%s) cannot be assigned to %s.%s (%s)",
+                    sourceClass.getSimpleName(), sourcePropertyName, sourceType.getName(),
+                    targetClass.getSimpleName(), targetPropertyName, targetType.getName()));
+        }
+        PropertyDescriptor targetDescriptor = BeanUtils.getPropertyDescriptor(targetClass, targetPropertyName);
+        Method targetReadMethod = targetDescriptor != null ? targetDescriptor.getReadMethod() : null;
+        mappings.add(new PropertyMapping<>(targetPropertyName, readMethod, targetReadMethod, writeMethod, null, null, null));
+        return this;
+    }
+
+    /**
+     * Maps a value read from the source to a value written to the target, typically with method references.
+     *
+     * @param getter not {@literal null}
+     * @param setter not {@literal null}
+     * @return this builder
+     */
+    @SuppressWarnings("unchecked")
+    public <V> GenericTransformerBuilder<S, T> map(Function<? super S, ? extends V> getter, BiConsumer<? super T, ? super V> setter) {
+        Objects.requireNonNull(getter, "getter == null");
+        Objects.requireNonNull(setter, "setter == null");
+        mappings.add(new PropertyMapping<>(null, null, null, null, (Function<? super S, Object>) getter, null, (BiConsumer<? super T, Object>) setter));
+        return this;
+    }
+
+    /**
+     * Maps a value read from the source to a value written to the target, typically with method references.
+     * The {@literal targetGetter} lets {@link MappedTransformer#update(Object, Object)} skip unchanged values.
+     *
+     * @param getter       not {@literal null}
+     * @param targetGetter not {@literal null}
+     * @param setter       not {@literal null}
+     * @return this builder
+     */
+    @SuppressWarnings("unchecked")
+    public <V> GenericTransformerBuilder<S, T> map(Function<? super S, ? extends V> getter, Function<? super T, ? extends V> targetGetter, BiConsumer<? super T, ? super V> setter) {
+        Objects.requireNonNull(getter, "getter == null");
+        Objects.requireNonNull(targetGetter, "targetGetter == null");
+        Objects.requireNonNull(setter, "setter == null");
+        mappings.add(new PropertyMapping<>(null, null, null, null, (Function<? super S, Object>) getter,
+                (Function<? super T, Object>) targetGetter, (BiConsumer<? super T, Object>) setter));
+        return this;
+    }
+
+    /**
+     * @return a transformer applying the mappings in the order of their declaration
+     * @throws IllegalStateException if there are more than {@link MappedTransformer#MAX_UPDATE_MAPPINGS} mappings
+     */
+    @SuppressWarnings("unchecked")
+    public MappedTransformer<S, T> build() {
+        if (mappings.size() > MappedTransformer.MAX_UPDATE_MAPPINGS) {
+            throw new IllegalStateException(String.format("At most %d mappings are supported : %d",
+                    MappedTransformer.MAX_UPDATE_MAPPINGS, mappings.size()));
+        }
+        PropertyMapping<S, T>[] array = mappings.toArray((PropertyMapping<S, T>[]) new PropertyMapping<?, ?>[mappings.size()]);
+        return new MappedTransformer<>(targetSupplier, UpdaterGenerator.generate(sourceClass, targetClass, array), array);
+    }
+
+    private static Method accessor(Class<?> beanClass, String propertyName, boolean read) {
+        Objects.requireNonNull(propertyName, "propertyName == null");
+        PropertyDescriptor descriptor = BeanUtils.getPropertyDescriptor(beanClass, propertyName);
+        Method method = descriptor == null ? null : read ? descriptor.getReadMethod() : descriptor.getWriteMethod();
+        if (method == null) {
+            throw new IllegalArgumentException(String.format("%s.%s : no %s method",
+                    beanClass.getSimpleName(), propertyName, read ? "read" : "write"));
+        }
+        return method;
+    }
+
+    /**
+     * A mapping declared by property names, with accessor methods, or by functions.
+     */
+    static final class PropertyMapping<S, T> {
+
+        // The target property name, null for mappings declared by functions.
+        private final String name;
+        private final Method readMethod;
+        // Reads the current target value, null if unknown.
+        private final Method targetReadMethod;
+        private final Method writeMethod;
+        private final Function<? super S, Object> getter;
+        // Reads the current target value, null if unknown.
+        private final Function<? super T, Object> targetGetter;
+        private final BiConsumer<? super T, Object> setter;
+
+        PropertyMapping(String name, Method readMethod, Method targetReadMethod, Method writeMethod,
+                Function<? super S, Object> getter, Function<? super T, Object> targetGetter, BiConsumer<? super T, Object> setter) {
+            this.name = name;
+            this.readMethod = readMethod;
+            this.targetReadMethod = targetReadMethod;
+            this.writeMethod = writeMethod;
+            this.getter = getter;
+            this.targetGetter = targetGetter;
+            this.setter = setter;
+        }
+
+        String getName() {
+            return name;
+        }
+
+        Method getReadMethod() {
+            return readMethod;
+        }
+
+        Method getTargetReadMethod() {
+            return targetReadMethod;
+        }
+
+        Method getWriteMethod() {
+            return writeMethod;
+        }
+
+        Function<? super S, Object> getGetter() {
+            return getter;
+        }
+
+        Function<? super T, Object> getTargetGetter() {
+            return targetGetter;
+        }
+
+        BiConsumer<? super T, Object> getSetter() {
+            return setter;
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package org.adrian.java.utils.transform;
+
+import lombok.NonNull;
+import org.adrian.java.utils.transform.GenericTransformerBuilder.PropertyMapping;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+import java.util.function.ToLongBiFunction;
+
+/**
+ * {@link GenericTransformer} built by a {@link GenericTransformerBuilder}, it knows its property mappings
+ * and can thus update targets with the changed values only.
+ *
+ * @param <S> the source type
+ * @param <T> the target type
+ * @author Marcus Adrian
+ */
+public class MappedTransformer<S, T> extends GenericTransformer<S, T> {
+
+    /**
+     * Maximum number of mappings of a transformer, one bit per mapping in the change mask of {@link #update(Object, Object)}.
+     */
+    public static final int MAX_UPDATE_MAPPINGS = Long.SIZE;
+
+    private final ToLongBiFunction<S, T> changeUpdater;
+    private final PropertyMapping<S, T>[] mappings;
+
+    <U extends BiConsumer<S, T> & ToLongBiFunction<S, T>> MappedTransformer(Supplier<T> targetSupplier, U updater, PropertyMapping<S, T>[] mappings) {
+        super(targetSupplier, updater);
+        this.changeUpdater = updater;
+        this.mappings = mappings;
+    }
+
+    /**
+     * Updates target with the source values which differ (according to {@link Object#equals(Object)}) from the target values.
+     * Values of mappings without target getter are always written.
+     * Bit {@code i} of the returned mask is set if the value of the {@code i}-th mapping (in declaration order) was written.
+     *
+     * @param source not {@code null}
+     * @param target not {@code null}
+     * @return the change mask, {@code 0} if nothing was written
+     */
+    public long update(@NonNull S source, @NonNull T target) {
+        return changeUpdater.applyAsLong(source, target);
+    }
+
+    /**
+     * The target property names in declaration order, {@code null} for mappings declared by functions.
+     *
+     * @return never {@code null}, unmodifiable
+     */
+    public List<String> getPropertyNames() {
+        List<String> names = new ArrayList<>(mappings.length);
+        for (PropertyMapping<S, T> mapping : mappings) {
+            names.add(mapping.getName());
+        }
+        return Collections.unmodifiableList(names);
+    }
+
+    /**
+     * The target property names of the mappings whose bit is set in the change mask.
+     *
+     * @param changes as returned by {@link #update(Object, Object)}
+     * @return never {@code null}
+     */
+    public List<String> changedPropertyNames(long changes) {
+        List<String> names = new ArrayList<>(Long.bitCount(changes));
+        for (int i = 0; i < mappings.length; i++) {
+            if ((changes & (1L << i)) != 0) {
+                names.add(mappings[i].getName());
+            }
+        }
+        return names;
+    }
+}
@@ -0,0 +1,267 @@
+package org.adrian.java.utils.transform;
+
+import java.nio.ByteBuffer;
+import java.util.Map;
+
+/**
+ * Open addressing hash table from text to values, queried with character ranges so that lookups do not allocate.
+ * Immutable once created and thus thread-safe.
+ *
+ * @param <V> the value type
+ * @author Marcus Adrian
+ */
+final class TextLookup<V> {
+
+    private final boolean ignoreCase;
+
+    private final String[] keys;
+
+    private final Object[] values;
+
+    private final int mask;
+
+    /**
+     * @param valuesByText not {@literal null}
+     * @param ignoreCase   {@literal true} to match the text case-insensitively
+     * @throws IllegalArgumentException if two texts match each other
+     */
+    TextLookup(Map<String, V> valuesByText, boolean ignoreCase) {
+        this.ignoreCase = ignoreCase;
+        int capacity = Integer.highestOneBit(Math.max(valuesByText.size(), 1) * 4);
+        this.keys = new String[capacity];
+        this.values = new Object[capacity];
+        this.mask = capacity - 1;
+        valuesByText.forEach((text, value) -> {
+            int slot = hash(text, 0, text.length()) & mask;
+            while (keys[slot] != null) {
+                if (matches(keys[slot], text, 0, text.length())) {
+                    throw new IllegalArgumentException(String.format("Ambiguous texts : %s, %s", keys[slot], text));
+                }
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = text;
+            values[slot] = value;
+        });
+    }
+
+    /**
+     * @param text  not {@literal null}
+     * @param start inclusive
+     * @param end   exclusive
+     * @return {@literal null} if there is no value for the text
+     */
+    @SuppressWarnings("unchecked")
+    V get(CharSequence text, int start, int end) {
+        int slot = hash(text, start, end) & mask;
+        String key;
+        while ((key = keys[slot]) != null) {
+            if (matches(key, text, start, end)) {
+                return (V) values[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return null;
+    }
+
+    /**
+     * @param chars not {@literal null}
+     * @param start inclusive
+     * @param end   exclusive
+     * @return {@literal null} if there is no value for the text
+     */
+    @SuppressWarnings("unchecked")
+    V get(char[] chars, int start, int end) {
+        int h = 0;
+        for (int i = start; i < end; i++) {
+            h = 31 * h + fold(chars[i]);
+        }
+        int slot = spread(h) & mask;
+        String key;
+        while ((key = keys[slot]) != null) {
+            if (matches(key, chars, start, end)) {
+                return (V) values[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return null;
+    }
+
+    /**
+     * Decodes the UTF-8 bytes on the fly, does not change the position of the buffer.
+     *
+     * @param utf8  not {@literal null}
+     * @param start absolute index, inclusive
+     * @param end   absolute index, exclusive
+     * @return {@literal null} if there is no value for the text or the bytes are malformed
+     */
+    @SuppressWarnings("unchecked")
+    V get(ByteBuffer utf8, int start, int end) {
+        int h = 0;
+        int codePoint;
+        for (int i = start; i < end; i += utf8Length(codePoint)) {
+            codePoint = codePointAt(utf8, i, end);
+            if (codePoint < 0) {
+                return null;
+            }
+            if (codePoint < Character.MIN_SUPPLEMENTARY_CODE_POINT) {
+                h = 31 * h + fold((char) codePoint);
+            } else {
+                h = 31 * h + fold(Character.highSurrogate(codePoint));
+                h = 31 * h + fold(Character.lowSurrogate(codePoint));
+            }
+        }
+        int slot = spread(h) & mask;
+        String key;
+        while ((key = keys[slot]) != null) {
+            if (matches(key, utf8, start, end)) {
+                return (V) values[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return null;
+    }
+
+    private int hash(CharSequence text, int start, int end) {
+        int h = 0;
+        for (int i = start; i < end; i++) {
+            h = 31 * h + fold(text.charAt(i));
+        }
+        return spread(h);
+    }
+
+    private static int spread(int h) {
+        return h ^ (h >>> 16);
+    }
+
+    private boolean matches(String key, CharSequence text, int start, int end) {
+        if (key.length() != end - start) {
+            return false;
+        }
+        for (int i = 0; i < key.length(); i++) {
+            if (fold(key.charAt(i)) != fold(text.charAt(start + i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean matches(String key, char[] chars, int start, int end) {
+        if (key.length() != end - start) {
+            return false;
+        }
+        for (int i = 0; i < key.length(); i++) {
+            if (fold(key.charAt(i)) != fold(chars[start + i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean matches(String key, ByteBuffer utf8, int start, int end) {
+        int k = 0;
+        int codePoint;
+        for (int i = start; i < end; i += utf8Length(codePoint)) {
+            codePoint = codePointAt(utf8, i, end);
+            if (codePoint < Character.MIN_SUPPLEMENTARY_CODE_POINT) {
+                if (k >= key.length() || fold(key.charAt(k++)) != fold((char) codePoint)) {
+                    return false;
+                }
+            } else {
+                if (k + 1 >= key.length()
+                        || fold(key.charAt(k++)) != fold(Character.highSurrogate(codePoint))
+                        || fold(key.charAt(k++)) != fold(Character.lowSurrogate(codePoint))) {
+                    return false;
+                }
+            }
+        }
+        return k == key.length();
+    }
+
+    /**
+     * Decodes the UTF-8 code point starting at {@literal index}.
+     *
+     * @return -1 if the bytes are malformed
+     */
+    private static int codePointAt(ByteBuffer utf8, int index, int end) {
+        int b0 = utf8.get(index);
+        if (b0 >= 0) {
+            return b0;
+        }
+        int length;
+        int codePoint;
+        int min;
+        if ((b0 & 0xE0) == 0xC0) {
+            length = 2;
+            codePoint = b0 & 0x1F;
+            min = 0x80;
+        } else if ((b0 & 0xF0) == 0xE0) {
+            length = 3;
+            codePoint = b0 & 0x0F;
+            min = 0x800;
+        } else if ((b0 & 0xF8) == 0xF0) {
+            length = 4;
+            codePoint = b0 & 0x07;
+            min = Character.MIN_SUPPLEMENTARY_CODE_POINT;
+        } else {
+            return -1;
+        }
+        if (index + length > end) {
+            return -1;
+        }
+        for (int i = 1; i < length; i++) {
+            int b = utf8.get(index + i);
+            if ((b & 0xC0) != 0x80) {
+                return -1;
+            }
+            codePoint = (codePoint << 6) | (b & 0x3F);
+        }
+        // overlong encodings, surrogates and out of range code points are malformed
+        if (codePoint < min || codePoint > Character.MAX_CODE_POINT
+                || (codePoint >= Character.MIN_SURROGATE && codePoint <= Character.MAX_SURROGATE)) {
+            return -1;
+        }
+        return codePoint;
+    }
+
+    private static int utf8Length(int codePoint) {
+        if (codePoint < 0x80) {
+            return 1;
+        } else if (codePoint < 0x800) {
+            return 2;
+        } else if (codePoint < Character.MIN_SUPPLEMENTARY_CODE_POINT) {
+            return 3;
+        }
+        return 4;
+    }
+
+    private char fold(char c) {
+        if (!ignoreCase) {
+            return c;
+        }
+        if (c < 128) {
+            return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+        }
+        // same folding as String#equalsIgnoreCase
+        return Character.toLowerCase(Character.toUpperCase(c));
+    }
+
+    /**
+     * The start of the range without leading whitespace, as defined by {@link String#trim()}.
+     */
+    static int trimStart(CharSequence text, int start, int end) {
+        while (start < end && text.charAt(start) <= ' ') {
+            start++;
+        }
+        return start;
+    }
+
+    /**
+     * The end of the range without trailing whitespace, as defined by {@link String#trim()}.
+     */
+    static int trimEnd(CharSequence text, int start, int end) {
+        while (end > start && text.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        return end;
+    }
+}
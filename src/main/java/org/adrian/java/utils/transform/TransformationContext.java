@@ -0,0 +1,39 @@
+package org.adrian.java.utils.transform;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Memoizes the target objects of {@link GenericTransformer}s by source object identity, so that a source object referenced
+ * several times in a graph is transformed only once and cycles are preserved.
+ * Scope it to a call or a request, it holds on to every transformed object and is not thread-safe.
+ *
+ * @author Marcus Adrian
+ * @see GenericTransformer#apply(Object, TransformationContext)
+ */
+public final class TransformationContext {
+
+    // The target objects per transformer, by identity of the source objects.
+    private final Map<GenericTransformer<?, ?>, Map<Object, Object>> targetsByTransformer = new IdentityHashMap<>(4);
+
+    @SuppressWarnings("unchecked")
+    <T> T get(GenericTransformer<?, T> transformer, Object source) {
+        Map<Object, Object> targets = targetsByTransformer.get(transformer);
+        return targets != null ? (T) targets.get(source) : null;
+    }
+
+    <T> void put(GenericTransformer<?, T> transformer, Object source, T target) {
+        targetsByTransformer.computeIfAbsent(transformer, t -> new IdentityHashMap<>()).put(source, target);
+    }
+
+    /**
+     * @return the number of memoized target objects
+     */
+    public int size() {
+        int size = 0;
+        for (Map<Object, Object> targets : targetsByTransformer.values()) {
+            size += targets.size();
+        }
+        return size;
+    }
+}
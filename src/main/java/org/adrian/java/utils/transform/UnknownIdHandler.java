@@ -0,0 +1,21 @@
+package org.adrian.java.utils.transform;
+
+/**
+ * Strategy called by the fail-safe conversions of {@link EnumSupport} when an {@literal idValue} has no corresponding enum.
+ *
+ * @author Marcus Adrian
+ * @see EnumSupport#LOG_EACH_UNKNOWN_ID
+ * @see AggregatingUnknownIdHandler
+ */
+@FunctionalInterface
+public interface UnknownIdHandler {
+
+    /**
+     * Called for every unknown {@literal idValue}, must be thread-safe.
+     *
+     * @param enumSupport the support that failed to convert, not {@literal null}
+     * @param id          the unknown {@literal idValue}, not {@literal null}
+     */
+    void onUnknownId(EnumSupport<?, ?> enumSupport, Object id);
+
+}
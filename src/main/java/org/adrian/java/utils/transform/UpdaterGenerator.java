@@ -0,0 +1,441 @@
+package org.adrian.java.utils.transform;
+
+import org.adrian.java.utils.transform.GenericTransformerBuilder.PropertyMapping;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.asm.ClassWriter;
+import org.springframework.asm.Label;
+import org.springframework.asm.MethodVisitor;
+import org.springframework.asm.Opcodes;
+import org.springframework.asm.Type;
+import org.springframework.util.ClassUtils;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaConversionException;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.ToLongBiFunction;
+
+/**
+ * Generates one class per built transformer, whose methods copy all values and the changed values of its mappings.
+ * The accessors are invoked directly, the functions of the mappings declared by functions through fields of the
+ * generated class. Each mapping thus has its own call sites, which stay monomorphic and can be inlined however many
+ * transformers are in use.
+ * <p>
+ * The class is defined in its own class loader, a child of the class loader of the target or of the source class,
+ * so it can be unloaded with its transformer. Accessors that cannot be invoked from there, for instance because they
+ * are not public, are invoked through classes spun by {@link LambdaMetafactory}, or by reflection if they cannot be spun
+ * either.
+ *
+ * @author Marcus Adrian
+ */
+final class UpdaterGenerator {
+
+    private static final Logger LOG = LoggerFactory.getLogger(UpdaterGenerator.class);
+
+    private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+
+    private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+
+    private static final AtomicInteger COUNTER = new AtomicInteger();
+
+    private static final String OBJECT = Type.getInternalName(Object.class);
+    private static final String FUNCTION = Type.getInternalName(Function.class);
+    private static final String BI_CONSUMER = Type.getInternalName(BiConsumer.class);
+    private static final String FUNCTION_DESCRIPTOR = Type.getDescriptor(Function.class);
+    private static final String BI_CONSUMER_DESCRIPTOR = Type.getDescriptor(BiConsumer.class);
+    private static final String COPY_DESCRIPTOR = "(Ljava/lang/Object;Ljava/lang/Object;)V";
+    private static final String UPDATE_DESCRIPTOR = "(Ljava/lang/Object;Ljava/lang/Object;)J";
+
+    // locals of the generated methods
+    private static final int SOURCE = 1;
+    private static final int TARGET = 2;
+    private static final int CHANGES = 3;
+    private static final int VALUE = 5;
+
+    private UpdaterGenerator() {
+    }
+
+    /**
+     * @return an instance of the generated class
+     */
+    @SuppressWarnings("unchecked")
+    static <S, T, U extends BiConsumer<S, T> & ToLongBiFunction<S, T>> U generate(Class<S> sourceClass, Class<T> targetClass, PropertyMapping<S, T>[] mappings) {
+        ClassLoader targetLoader = targetClass.getClassLoader();
+        UpdaterClassLoader loader = new UpdaterClassLoader(isVisible(sourceClass, targetLoader) ? targetLoader : sourceClass.getClassLoader());
+        String className = UpdaterGenerator.class.getName() + "$Updater" + COUNTER.incrementAndGet();
+        List<Object> functions = new ArrayList<>();
+        byte[] bytes = new Generator(className.replace('.', '/'), mappings, loader, functions).generate();
+        try {
+            return (U) loader.define(className, bytes).getConstructor(Object[].class).newInstance((Object) functions.toArray());
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(String.format("Cannot instantiate %s", className), e);
+        }
+    }
+
+    /**
+     * @return {@literal true} if the method can be invoked by the generated class, that is the method, its declaring
+     * class and the types of its value are public and visible from its class loader
+     */
+    private static boolean isDirect(Method method, ClassLoader loader) {
+        if (method == null || !Modifier.isPublic(method.getModifiers())
+                || !Modifier.isPublic(method.getDeclaringClass().getModifiers())
+                || !isVisible(method.getDeclaringClass(), loader)) {
+            return false;
+        }
+        Class<?> valueType = method.getParameterCount() == 0 ? method.getReturnType() : method.getParameterTypes()[0];
+        return valueType.isPrimitive() || Modifier.isPublic(valueType.getModifiers()) && isVisible(valueType, loader);
+    }
+
+    private static boolean isVisible(Class<?> type, ClassLoader loader) {
+        while (type.isArray()) {
+            type = type.getComponentType();
+        }
+        if (type.isPrimitive()) {
+            return true;
+        }
+        try {
+            return Class.forName(type.getName(), false, loader) == type;
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+
+    private static Function<Object, Object> getter(Method readMethod) {
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        if (isSpinnable(readMethod)) {
+            try {
+                MethodHandle handle = lookup.unreflect(readMethod);
+                CallSite site = LambdaMetafactory.metafactory(lookup, "apply", MethodType.methodType(Function.class), GETTER_TYPE, handle,
+                        MethodType.methodType(ClassUtils.resolvePrimitiveIfNecessary(readMethod.getReturnType()), readMethod.getDeclaringClass()));
+                return newInstance(site);
+            } catch (LambdaConversionException | IllegalAccessException e) {
+                LOG.warn("Falling back to reflection for {}", readMethod, e);
+            }
+        }
+        return source -> invoke(readMethod, source);
+    }
+
+    private static BiConsumer<Object, Object> setter(Method writeMethod) {
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        if (isSpinnable(writeMethod)) {
+            try {
+                MethodHandle handle = lookup.unreflect(writeMethod);
+                CallSite site = LambdaMetafactory.metafactory(lookup, "accept", MethodType.methodType(BiConsumer.class), SETTER_TYPE, handle,
+                        MethodType.methodType(void.class, writeMethod.getDeclaringClass(), ClassUtils.resolvePrimitiveIfNecessary(writeMethod.getParameterTypes()[0])));
+                return newInstance(site);
+            } catch (LambdaConversionException | IllegalAccessException e) {
+                LOG.warn("Falling back to reflection for {}", writeMethod, e);
+            }
+        }
+        return (target, value) -> invoke(writeMethod, target, value);
+    }
+
+    /**
+     * Invokes the factory of a non-capturing lambda call site, which does not throw checked exceptions.
+     */
+    @SuppressWarnings("unchecked")
+    private static <F> F newInstance(CallSite site) {
+        try {
+            return (F) site.getTarget().invoke();
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Spun classes are defined in the class loader of this class, they must be able to see the accessed classes.
+     */
+    private static boolean isSpinnable(Method method) {
+        ClassLoader loader = UpdaterGenerator.class.getClassLoader();
+        return Modifier.isPublic(method.getDeclaringClass().getModifiers())
+                && isVisible(method.getDeclaringClass(), loader)
+                && isVisible(method.getReturnType(), loader)
+                && (method.getParameterCount() == 0 || isVisible(method.getParameterTypes()[0], loader));
+    }
+
+    private static Object invoke(Method method, Object bean, Object... args) {
+        try {
+            return method.invoke(bean, args);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(String.format("Cannot invoke %s", method), e);
+        }
+    }
+
+    /**
+     * Generates the class, collecting the functions it reads from fields in the order of these fields.
+     */
+    private static final class Generator {
+
+        private final String className;
+        private final PropertyMapping<?, ?>[] mappings;
+        private final ClassLoader loader;
+        private final List<Object> functions;
+        // the field names of the getter, target getter and setter functions per mapping, null if invoked directly
+        private final String[][] fields;
+        private final ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_MAXS | ClassWriter.COMPUTE_FRAMES);
+
+        Generator(String className, PropertyMapping<?, ?>[] mappings, ClassLoader loader, List<Object> functions) {
+            this.className = className;
+            this.mappings = mappings;
+            this.loader = loader;
+            this.functions = functions;
+            this.fields = new String[mappings.length][];
+        }
+
+        byte[] generate() {
+            writer.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC | Opcodes.ACC_FINAL | Opcodes.ACC_SUPER, className, null, OBJECT,
+                    new String[] { BI_CONSUMER, Type.getInternalName(ToLongBiFunction.class) });
+            for (int i = 0; i < mappings.length; i++) {
+                PropertyMapping<?, ?> mapping = mappings[i];
+                fields[i] = new String[] { getterField("g" + i, mapping.getReadMethod(), mapping.getGetter()),
+                        getterField("t" + i, mapping.getTargetReadMethod(), mapping.getTargetGetter()),
+                        setterField("s" + i, mapping.getWriteMethod(), mapping.getSetter()) };
+            }
+            generateConstructor();
+            generateCopy();
+            generateUpdate();
+            writer.visitEnd();
+            return writer.toByteArray();
+        }
+
+        /**
+         * @return the name of the field holding the getter function, {@literal null} if the read method is invoked
+         * directly or if there is neither a read method nor a function
+         */
+        private String getterField(String name, Method readMethod, Function<?, Object> getter) {
+            if (readMethod != null) {
+                return isDirect(readMethod, loader) ? null : field(name, getter(readMethod), FUNCTION_DESCRIPTOR);
+            }
+            return getter == null ? null : field(name, getter, FUNCTION_DESCRIPTOR);
+        }
+
+        private String setterField(String name, Method writeMethod, BiConsumer<?, Object> setter) {
+            if (writeMethod != null) {
+                return isDirect(writeMethod, loader) ? null : field(name, setter(writeMethod), BI_CONSUMER_DESCRIPTOR);
+            }
+            return field(name, setter, BI_CONSUMER_DESCRIPTOR);
+        }
+
+        private String field(String name, Object function, String descriptor) {
+            writer.visitField(Opcodes.ACC_PRIVATE | Opcodes.ACC_FINAL, name, descriptor, null, null).visitEnd();
+            functions.add(function);
+            return name;
+        }
+
+        private void generateConstructor() {
+            MethodVisitor mv = writer.visitMethod(Opcodes.ACC_PUBLIC, "<init>", "([Ljava/lang/Object;)V", null, null);
+            mv.visitCode();
+            mv.visitVarInsn(Opcodes.ALOAD, 0);
+            mv.visitMethodInsn(Opcodes.INVOKESPECIAL, OBJECT, "<init>", "()V", false);
+            int index = 0;
+            for (String[] names : fields) {
+                for (int k = 0; k < names.length; k++) {
+                    if (names[k] != null) {
+                        String type = k == 2 ? BI_CONSUMER : FUNCTION;
+                        mv.visitVarInsn(Opcodes.ALOAD, 0);
+                        mv.visitVarInsn(Opcodes.ALOAD, 1);
+                        mv.visitLdcInsn(index++);
+                        mv.visitInsn(Opcodes.AALOAD);
+                        mv.visitTypeInsn(Opcodes.CHECKCAST, type);
+                        mv.visitFieldInsn(Opcodes.PUTFIELD, className, names[k], "L" + type + ";");
+                    }
+                }
+            }
+            mv.visitInsn(Opcodes.RETURN);
+            mv.visitMaxs(0, 0);
+            mv.visitEnd();
+        }
+
+        /**
+         * {@code accept(source, target)} copies all values.
+         */
+        private void generateCopy() {
+            MethodVisitor mv = writer.visitMethod(Opcodes.ACC_PUBLIC, "accept", COPY_DESCRIPTOR, null, null);
+            mv.visitCode();
+            for (int i = 0; i < mappings.length; i++) {
+                Class<?> valueType = pushSetterTarget(mv, i);
+                pushValue(mv, i, valueType);
+                invokeSetter(mv, i);
+            }
+            mv.visitInsn(Opcodes.RETURN);
+            mv.visitMaxs(0, 0);
+            mv.visitEnd();
+        }
+
+        /**
+         * {@code applyAsLong(source, target)} copies the changed values and returns the change mask,
+         * see {@link MappedTransformer#update(Object, Object)}.
+         */
+        private void generateUpdate() {
+            MethodVisitor mv = writer.visitMethod(Opcodes.ACC_PUBLIC, "applyAsLong", UPDATE_DESCRIPTOR, null, null);
+            mv.visitCode();
+            mv.visitInsn(Opcodes.LCONST_0);
+            mv.visitVarInsn(Opcodes.LSTORE, CHANGES);
+            for (int i = 0; i < mappings.length; i++) {
+                Class<?> valueType = setterValueType(i);
+                Type value = Type.getType(valueType);
+                pushValue(mv, i, valueType);
+                mv.visitVarInsn(value.getOpcode(Opcodes.ISTORE), VALUE);
+                Label unchanged = new Label();
+                if (mappings[i].getTargetReadMethod() != null || mappings[i].getTargetGetter() != null) {
+                    mv.visitVarInsn(value.getOpcode(Opcodes.ILOAD), VALUE);
+                    box(mv, valueType);
+                    box(mv, pushTargetValue(mv, i));
+                    mv.visitMethodInsn(Opcodes.INVOKESTATIC, Type.getInternalName(Objects.class), "equals",
+                            "(Ljava/lang/Object;Ljava/lang/Object;)Z", false);
+                    mv.visitJumpInsn(Opcodes.IFNE, unchanged);
+                }
+                pushSetterTarget(mv, i);
+                mv.visitVarInsn(value.getOpcode(Opcodes.ILOAD), VALUE);
+                invokeSetter(mv, i);
+                mv.visitVarInsn(Opcodes.LLOAD, CHANGES);
+                mv.visitLdcInsn(1L << i);
+                mv.visitInsn(Opcodes.LOR);
+                mv.visitVarInsn(Opcodes.LSTORE, CHANGES);
+                mv.visitLabel(unchanged);
+            }
+            mv.visitVarInsn(Opcodes.LLOAD, CHANGES);
+            mv.visitInsn(Opcodes.LRETURN);
+            mv.visitMaxs(0, 0);
+            mv.visitEnd();
+        }
+
+        /**
+         * @return the type of the value passed to the setter, {@literal Object} for a setter function
+         */
+        private Class<?> setterValueType(int i) {
+            return fields[i][2] == null ? mappings[i].getWriteMethod().getParameterTypes()[0] : Object.class;
+        }
+
+        /**
+         * Pushes the receiver of the setter.
+         *
+         * @return the type of the value passed to the setter
+         */
+        private Class<?> pushSetterTarget(MethodVisitor mv, int i) {
+            if (fields[i][2] == null) {
+                mv.visitVarInsn(Opcodes.ALOAD, TARGET);
+                mv.visitTypeInsn(Opcodes.CHECKCAST, Type.getInternalName(mappings[i].getWriteMethod().getDeclaringClass()));
+            } else {
+                mv.visitVarInsn(Opcodes.ALOAD, 0);
+                mv.visitFieldInsn(Opcodes.GETFIELD, className, fields[i][2], BI_CONSUMER_DESCRIPTOR);
+                mv.visitVarInsn(Opcodes.ALOAD, TARGET);
+            }
+            return setterValueType(i);
+        }
+
+        private void invokeSetter(MethodVisitor mv, int i) {
+            if (fields[i][2] == null) {
+                invoke(mv, mappings[i].getWriteMethod());
+            } else {
+                mv.visitMethodInsn(Opcodes.INVOKEINTERFACE, BI_CONSUMER, "accept", COPY_DESCRIPTOR, true);
+            }
+        }
+
+        /**
+         * Pushes the source value, converted to {@literal valueType}.
+         */
+        private void pushValue(MethodVisitor mv, int i, Class<?> valueType) {
+            Class<?> type;
+            if (fields[i][0] == null) {
+                mv.visitVarInsn(Opcodes.ALOAD, SOURCE);
+                type = invokeGetter(mv, mappings[i].getReadMethod());
+            } else {
+                mv.visitVarInsn(Opcodes.ALOAD, 0);
+                mv.visitFieldInsn(Opcodes.GETFIELD, className, fields[i][0], FUNCTION_DESCRIPTOR);
+                mv.visitVarInsn(Opcodes.ALOAD, SOURCE);
+                mv.visitMethodInsn(Opcodes.INVOKEINTERFACE, FUNCTION, "apply", "(Ljava/lang/Object;)Ljava/lang/Object;", true);
+                type = Object.class;
+            }
+            convert(mv, type, valueType);
+        }
+
+        /**
+         * Pushes the target value.
+         *
+         * @return its type
+         */
+        private Class<?> pushTargetValue(MethodVisitor mv, int i) {
+            if (fields[i][1] == null) {
+                mv.visitVarInsn(Opcodes.ALOAD, TARGET);
+                return invokeGetter(mv, mappings[i].getTargetReadMethod());
+            }
+            mv.visitVarInsn(Opcodes.ALOAD, 0);
+            mv.visitFieldInsn(Opcodes.GETFIELD, className, fields[i][1], FUNCTION_DESCRIPTOR);
+            mv.visitVarInsn(Opcodes.ALOAD, TARGET);
+            mv.visitMethodInsn(Opcodes.INVOKEINTERFACE, FUNCTION, "apply", "(Ljava/lang/Object;)Ljava/lang/Object;", true);
+            return Object.class;
+        }
+
+        private static Class<?> invokeGetter(MethodVisitor mv, Method readMethod) {
+            mv.visitTypeInsn(Opcodes.CHECKCAST, Type.getInternalName(readMethod.getDeclaringClass()));
+            invoke(mv, readMethod);
+            return readMethod.getReturnType();
+        }
+
+        private static void invoke(MethodVisitor mv, Method method) {
+            Class<?> owner = method.getDeclaringClass();
+            mv.visitMethodInsn(owner.isInterface() ? Opcodes.INVOKEINTERFACE : Opcodes.INVOKEVIRTUAL,
+                    Type.getInternalName(owner), method.getName(), Type.getMethodDescriptor(method), owner.isInterface());
+            if (method.getReturnType() != void.class && method.getParameterCount() > 0) {
+                // fluent setter
+                mv.visitInsn(Type.getType(method.getReturnType()).getSize() == 2 ? Opcodes.POP2 : Opcodes.POP);
+            }
+        }
+
+        /**
+         * Converts the value on the stack, the types are assignable according to {@link ClassUtils#isAssignable(Class, Class)}
+         * or {@literal type} is {@literal Object}.
+         */
+        private static void convert(MethodVisitor mv, Class<?> type, Class<?> valueType) {
+            if (type == valueType) {
+                return;
+            }
+            if (type.isPrimitive()) {
+                box(mv, type);
+            } else if (valueType.isPrimitive()) {
+                Class<?> wrapper = ClassUtils.resolvePrimitiveIfNecessary(valueType);
+                mv.visitTypeInsn(Opcodes.CHECKCAST, Type.getInternalName(wrapper));
+                mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, Type.getInternalName(wrapper), valueType.getName() + "Value",
+                        Type.getMethodDescriptor(Type.getType(valueType)), false);
+            } else if (!valueType.isAssignableFrom(type)) {
+                mv.visitTypeInsn(Opcodes.CHECKCAST, Type.getInternalName(valueType));
+            }
+        }
+
+        private static void box(MethodVisitor mv, Class<?> type) {
+            if (type.isPrimitive()) {
+                Class<?> wrapper = ClassUtils.resolvePrimitiveIfNecessary(type);
+                mv.visitMethodInsn(Opcodes.INVOKESTATIC, Type.getInternalName(wrapper), "valueOf",
+                        Type.getMethodDescriptor(Type.getType(wrapper), Type.getType(type)), false);
+            }
+        }
+    }
+
+    /**
+     * Defines the generated class of one transformer.
+     */
+    private static final class UpdaterClassLoader extends ClassLoader {
+
+        UpdaterClassLoader(ClassLoader parent) {
+            super(parent);
+        }
+
+        Class<?> define(String name, byte[] bytes) {
+            return defineClass(name, bytes, 0, bytes.length);
+        }
+    }
+}
@@ -1,9 +1,12 @@
 package org.adrian.java.utils;
 
+import org.adrian.java.utils.jpa.BaseRepositoryImpl;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
 
 @SpringBootApplication
+@EnableJpaRepositories(repositoryBaseClass = BaseRepositoryImpl.class)
 public class TestApplication {
 
 	public static void main(String[] args) {
@@ -0,0 +1,382 @@
+package org.adrian.java.utils.jpa;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import javax.persistence.EntityManager;
+import javax.persistence.Tuple;
+
+import org.adrian.java.utils.TestApplication;
+import org.adrian.java.utils.jpa.PredicateUtils.ComparatorKeyword;
+import org.adrian.java.utils.sample.domain.Category;
+import org.adrian.java.utils.sample.domain.Composer;
+import org.adrian.java.utils.sample.domain.Item;
+import org.adrian.java.utils.sample.domain.ItemDto;
+import org.adrian.java.utils.sample.domain.PropertyNames;
+import org.adrian.java.utils.sample.domain.Recording;
+import org.adrian.java.utils.sample.repo.ItemRepository;
+import org.adrian.java.utils.sample.repo.RecordingRepository;
+import org.adrian.java.utils.transform.GenericTransformer;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.util.AopTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = TestApplication.class)
+public class BaseRepositoryImplTest {
+
+	@Autowired
+	private ItemRepository itemRepository;
+
+	@Autowired
+	private EntityManager entityManager;
+
+	@Autowired
+	private RecordingRepository recordingRepository;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	@Test
+	public void findSlice() {
+		Specification<Item> spec = SpecificationUtils.toParameterSpecification(PropertyNames.Item.PRICE, 1600, ComparatorKeyword.gt);
+		Slice<Item> slice = itemRepository.findSlice(spec, PageRequest.of(0, 2, Sort.by(PropertyNames.Item.PRICE)));
+		assertEquals(2, slice.getNumberOfElements());
+		assertTrue(slice.hasNext());
+		assertEquals(1750, slice.getContent().get(0).getPrice().intValue());
+
+		slice = itemRepository.findSlice(spec, slice.nextPageable());
+		assertEquals(1, slice.getNumberOfElements());
+		assertFalse(slice.hasNext());
+		assertEquals(1950, slice.getContent().get(0).getPrice().intValue());
+
+		slice = itemRepository.findSlice(null, PageRequest.of(1, 2));
+		assertEquals(2, slice.getNumberOfElements());
+		assertFalse(slice.hasNext());
+	}
+
+	@Test
+	@Transactional(readOnly = true)
+	public void findAllProjection() {
+		Specification<Item> spec = SpecificationUtils.toParameterSpecification(PropertyNames.Item.PRICE, 1600, ComparatorKeyword.gt);
+		Sort sort = Sort.by(PropertyNames.Item.PRICE);
+		List<Item> items = itemRepository.findAll(spec, sort);
+		entityManager.clear();
+
+		List<ItemDto> dtos = itemRepository.findAll(spec, sort, ItemDto.class, PropertyNames.Item.NAME, PropertyNames.Item.PRICE);
+		assertEquals(items.stream().map(Item::getName).collect(Collectors.toList()), dtos.stream().map(ItemDto::getName).collect(Collectors.toList()));
+		assertEquals(items.stream().map(Item::getPrice).collect(Collectors.toList()), dtos.stream().map(ItemDto::getPrice).collect(Collectors.toList()));
+		// no entity was loaded
+		items.forEach(item -> assertFalse(entityManager.contains(item)));
+		assertEquals(0, entityManager.unwrap(Session.class).getStatistics().getEntityCount());
+
+		GenericTransformer<Tuple, ItemDto> transformer = new GenericTransformer<>(ItemDto::new, (tuple, dto) -> {
+			dto.setName(tuple.get(PropertyNames.Item.COMPOSER_NAME, String.class) + " : " + tuple.get(PropertyNames.Item.NAME, String.class));
+			dto.setPrice(tuple.get(PropertyNames.Item.PRICE, Integer.class));
+		});
+		dtos = itemRepository.findAll(spec, sort, transformer, PropertyNames.Item.NAME, PropertyNames.Item.PRICE, PropertyNames.Item.COMPOSER_NAME);
+		assertEquals(Arrays.asList("Strauss : Elektra", "Bach : Christmas Oratorio", "Haydn : Creation"),
+				dtos.stream().map(ItemDto::getName).collect(Collectors.toList()));
+		assertEquals(0, entityManager.unwrap(Session.class).getStatistics().getEntityCount());
+	}
+
+	@Test
+	@Transactional(readOnly = true)
+	public void stream() {
+		List<Item> items = new ArrayList<>();
+		try (Stream<Item> stream = itemRepository.stream(null, Sort.by(PropertyNames.Item.PRICE), 2, 1)) {
+			stream.forEach(item -> {
+				assertTrue(entityManager.contains(item));
+				items.forEach(previous -> assertFalse(entityManager.contains(previous)));
+				items.add(item);
+			});
+		}
+		assertEquals(ids(itemRepository.findAll(Sort.by(PropertyNames.Item.PRICE))), ids(items));
+
+		Specification<Item> spec = SpecificationUtils.toParameterSpecification(PropertyNames.Item.PRICE, 1600, ComparatorKeyword.gt);
+		try (Stream<Item> stream = itemRepository.stream(spec, Sort.unsorted())) {
+			assertEquals(3, stream.count());
+		}
+	}
+
+	@Test
+	@Transactional
+	public void streamFlushes() {
+		// the stream query does not read composers, so the change is not flushed automatically before it
+		Composer composer = entityManager.find(Composer.class, 1L);
+		composer.setName("J. S. Bach");
+		try (Stream<Item> stream = itemRepository.stream(null, Sort.by(PropertyNames.Item.PRICE), 2, 1)) {
+			assertEquals(4, stream.count());
+		}
+		assertFalse(entityManager.contains(composer));
+		// the pending change was flushed before the persistence context was cleared
+		assertEquals("J. S. Bach", entityManager.find(Composer.class, 1L).getName());
+	}
+
+	@Test
+	public void insertAll() {
+		List<Recording> recordings = new ArrayList<>();
+		for (int i = 0; i < 12; i++) {
+			Recording recording = new Recording();
+			recording.setTitle("Take " + i);
+			recordings.add(recording);
+		}
+		Statistics statistics = entityManager.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+		statistics.clear();
+		statistics.setStatisticsEnabled(true);
+		try {
+			assertEquals(12, recordingRepository.insertAll(recordings, 5));
+			assertEquals(12, statistics.getEntityInsertCount());
+			// one statement per batch and one sequence call
+			assertEquals(4, statistics.getPrepareStatementCount());
+		} finally {
+			statistics.setStatisticsEnabled(false);
+		}
+		assertEquals(12, recordings.stream().map(Recording::getId).distinct().count());
+		assertEquals(12, recordingRepository.count());
+		recordingRepository.deleteAllInBatch();
+	}
+
+	@Test
+	public void bulkUpdateDelete() {
+		List<Recording> recordings = new ArrayList<>();
+		for (int i = 0; i < 12; i++) {
+			Recording recording = new Recording();
+			recording.setTitle(i % 2 == 0 ? "Take" : "Outtake");
+			recordings.add(recording);
+		}
+		recordingRepository.insertAll(recordings, 12);
+
+		Specification<Recording> outtakes = SpecificationUtils.toParameterSpecification("title", "Outtake");
+		assertEquals(6, recordingRepository.bulkUpdate(outtakes, Collections.singletonMap("title", "Rejected")));
+		Specification<Recording> rejected = SpecificationUtils.toParameterSpecification("title", "Rejected");
+		assertEquals(6, recordingRepository.count(rejected));
+
+		List<Specification<Recording>> chunks = recordingRepository.chunkById(rejected, 5);
+		assertEquals(3, chunks.size());
+		int deleted = 0;
+		for (Specification<Recording> chunk : chunks) {
+			deleted += recordingRepository.bulkDelete(chunk);
+		}
+		assertEquals(6, deleted);
+		assertEquals(0, recordingRepository.count(rejected));
+		assertTrue(recordingRepository.chunkById(rejected, 5).isEmpty());
+
+		assertEquals(6, recordingRepository.bulkDelete(null));
+		assertEquals(0, recordingRepository.count());
+	}
+
+	@Test
+	public void findAllCached() {
+		CacheableSpecification<Item> spec = CacheableSpecification.<Item> all().and(PropertyNames.Item.PRICE, 1600, ComparatorKeyword.gt)
+				.andIn(PropertyNames.Item.CATEGORY, Arrays.asList(Category.ORATORIO, Category.OPERA));
+		assertEquals(spec, CacheableSpecification.<Item> all().and(PropertyNames.Item.PRICE, 1600, ComparatorKeyword.gt)
+				.andIn(PropertyNames.Item.CATEGORY, Arrays.asList(Category.ORATORIO, Category.OPERA)));
+		assertEquals(spec.hashCode(), CacheableSpecification.<Item> all().and(PropertyNames.Item.PRICE, 1600, ComparatorKeyword.gt)
+				.andIn(PropertyNames.Item.CATEGORY, Arrays.asList(Category.ORATORIO, Category.OPERA)).hashCode());
+		assertNotEquals(spec, CacheableSpecification.<Item> all().and(PropertyNames.Item.PRICE, 1600, ComparatorKeyword.ge));
+		assertEquals(spec, spec.and(PropertyNames.Item.NAME, null));
+
+		BaseRepositoryImpl<?> repository = (BaseRepositoryImpl<?>) AopTestUtils.getTargetObject(itemRepository);
+		Duration ttl = Duration.ofMinutes(1);
+		PageRequest pageable = PageRequest.of(0, 10, Sort.by(PropertyNames.Item.PRICE));
+		Page<Item> page = itemRepository.findAllCached(spec, pageable, ttl);
+		assertEquals(3, page.getNumberOfElements());
+		long hits = repository.getQueryCacheHitCount();
+		assertSame(page, itemRepository.findAllCached(CacheableSpecification.<Item> all().and(PropertyNames.Item.PRICE, 1600, ComparatorKeyword.gt)
+				.andIn(PropertyNames.Item.CATEGORY, Arrays.asList(Category.ORATORIO, Category.OPERA)), PageRequest.of(0, 10, Sort.by(PropertyNames.Item.PRICE)), ttl));
+		assertEquals(hits + 1, repository.getQueryCacheHitCount());
+		assertEquals(ids(page.getContent()), ids(itemRepository.findAllCached(spec, pageable.getSort(), ttl)));
+
+		// a write invalidates the cache
+		Item item = new Item();
+		item.setName("Te Deum");
+		item.setPrice(2200);
+		item.setCategory(Category.ORATORIO);
+		itemRepository.save(item);
+		try {
+			assertEquals(4, itemRepository.findAllCached(spec, pageable, ttl).getNumberOfElements());
+			assertEquals(4, itemRepository.findAllCached(spec, pageable.getSort(), ttl).size());
+		} finally {
+			itemRepository.delete(item);
+		}
+		assertEquals(3, itemRepository.findAllCached(spec, pageable, ttl).getNumberOfElements());
+
+		// read on the connection of the caller, the cached entities are detached
+		CacheableSpecification<Item> oratorios = CacheableSpecification.<Item> all().and(PropertyNames.Item.CATEGORY, Category.ORATORIO);
+		Statistics statistics = entityManager.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+		new TransactionTemplate(transactionManager).execute(status -> {
+			entityManager.find(Item.class, 1L);
+			statistics.clear();
+			statistics.setStatisticsEnabled(true);
+			try {
+				List<Item> items = itemRepository.findAllCached(oratorios, pageable.getSort(), ttl);
+				assertEquals(2, items.size());
+				assertFalse(entityManager.contains(items.get(0)));
+				assertEquals(0, statistics.getConnectCount());
+			} finally {
+				statistics.setStatisticsEnabled(false);
+			}
+
+			// the flushed writes of the transaction are read, but not cached
+			Item oratorio = new Item();
+			oratorio.setName("Te Deum");
+			oratorio.setCategory(Category.ORATORIO);
+			itemRepository.saveAndFlush(oratorio);
+			assertEquals(3, itemRepository.findAllCached(oratorios, pageable.getSort(), ttl).size());
+			status.setRollbackOnly();
+			return null;
+		});
+		assertEquals(2, itemRepository.findAllCached(oratorios, pageable.getSort(), ttl).size());
+
+		// the least recently used results beyond the cache size are evicted
+		itemRepository.setQueryCacheSize(1);
+		try {
+			itemRepository.findAllCached(oratorios, pageable.getSort(), ttl);
+			hits = repository.getQueryCacheHitCount();
+			itemRepository.findAllCached(spec, pageable, ttl);
+			itemRepository.findAllCached(oratorios, pageable.getSort(), ttl);
+			assertEquals(hits, repository.getQueryCacheHitCount());
+		} finally {
+			itemRepository.setQueryCacheSize(ExtendedRepository.DEFAULT_QUERY_CACHE_SIZE);
+		}
+	}
+
+	@Test
+	public void findByIdCached() {
+		Item item = itemRepository.findByIdCached(1L).get();
+		long hits = itemRepository.getEntityCacheHitCount();
+		assertSame(item, itemRepository.findByIdCached(1L).get());
+		assertEquals(hits + 1, itemRepository.getEntityCacheHitCount());
+		assertFalse(itemRepository.findByIdCached(99L).isPresent());
+		assertFalse(itemRepository.findByIdCached(null).isPresent());
+
+		// the misses are read by one query
+		Statistics statistics = entityManager.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+		statistics.clear();
+		statistics.setStatisticsEnabled(true);
+		Map<Long, Item> items;
+		long misses = itemRepository.getEntityCacheMissCount();
+		try {
+			items = itemRepository.findAllByIdCached(Arrays.asList(3L, 1L, null, 99L, 2L, 3L));
+			assertEquals(1, statistics.getQueryExecutionCount());
+		} finally {
+			statistics.setStatisticsEnabled(false);
+		}
+		assertEquals(misses + 3, itemRepository.getEntityCacheMissCount());
+		assertEquals(Arrays.asList(3L, 1L, 2L), new ArrayList<>(items.keySet()));
+		assertSame(item, items.get(1L));
+
+		// a write evicts the entity, the cached entities must not be modified
+		Item written = itemRepository.findById(1L).get();
+		written.setPrice(written.getPrice() + 1);
+		itemRepository.save(written);
+		try {
+			Item saved = itemRepository.findByIdCached(1L).get();
+			assertNotSame(item, saved);
+			assertEquals(written.getPrice(), saved.getPrice());
+			assertSame(items.get(2L), itemRepository.findByIdCached(2L).get());
+		} finally {
+			written.setPrice(written.getPrice() - 1);
+			itemRepository.save(written);
+		}
+
+		// read on the connection of the caller, the cached entities are detached
+		new TransactionTemplate(transactionManager).execute(status -> {
+			entityManager.find(Item.class, 1L);
+			statistics.clear();
+			statistics.setStatisticsEnabled(true);
+			try {
+				Item cached = itemRepository.findByIdCached(4L).get();
+				assertFalse(entityManager.contains(cached));
+				assertEquals(0, statistics.getConnectCount());
+			} finally {
+				statistics.setStatisticsEnabled(false);
+			}
+
+			// the flushed writes of the transaction are read, but not cached
+			Item renamed = itemRepository.findById(4L).get();
+			renamed.setName("Renamed");
+			itemRepository.saveAndFlush(renamed);
+			assertEquals("Renamed", itemRepository.findByIdCached(4L).get().getName());
+			status.setRollbackOnly();
+			return null;
+		});
+		assertNotEquals("Renamed", itemRepository.findByIdCached(4L).get().getName());
+
+		// the evictions of a transaction are registered once
+		new TransactionTemplate(transactionManager).execute(status -> {
+			itemRepository.save(itemRepository.findById(1L).get());
+			int synchronizations = TransactionSynchronizationManager.getSynchronizations().size();
+			itemRepository.save(itemRepository.findById(2L).get());
+			itemRepository.save(itemRepository.findById(3L).get());
+			assertEquals(synchronizations, TransactionSynchronizationManager.getSynchronizations().size());
+			return null;
+		});
+
+		// the least recently used entities beyond the cache size are evicted
+		itemRepository.setEntityCacheSize(1);
+		try {
+			itemRepository.findByIdCached(2L);
+			misses = itemRepository.getEntityCacheMissCount();
+			itemRepository.findByIdCached(3L);
+			itemRepository.findByIdCached(2L);
+			assertEquals(misses + 2, itemRepository.getEntityCacheMissCount());
+		} finally {
+			itemRepository.setEntityCacheSize(ExtendedRepository.DEFAULT_ENTITY_CACHE_SIZE);
+		}
+	}
+
+	@Test
+	public void findAllCachedCount() {
+		Duration ttl = Duration.ofMinutes(1);
+		Page<Item> page = itemRepository.findAll(null, PageRequest.of(0, 3), "all", ttl);
+		assertEquals(4, page.getTotalElements());
+
+		// the count is reused while the key is the same
+		Item item = new Item();
+		item.setName("Te Deum");
+		item.setPrice(1200);
+		itemRepository.save(item);
+		try {
+			assertEquals(4, itemRepository.findAll(null, PageRequest.of(0, 3), "all", ttl).getTotalElements());
+			assertEquals(5, itemRepository.findAll(null, PageRequest.of(0, 3), "all again", ttl).getTotalElements());
+			assertEquals(5, itemRepository.findAll(null, PageRequest.of(0, 3), "expired", Duration.ZERO).getTotalElements());
+		} finally {
+			itemRepository.delete(item);
+		}
+	}
+
+	private static List<Long> ids(List<Item> items) {
+		return items.stream().map(Item::getId).collect(Collectors.toList());
+	}
+
+}
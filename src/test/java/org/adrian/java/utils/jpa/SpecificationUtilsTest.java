@@ -1,10 +1,23 @@
 package org.adrian.java.utils.jpa;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
+import java.util.List;
 import java.util.function.Predicate;
 
+import javax.persistence.EntityManager;
+import javax.persistence.TypedQuery;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Root;
+
 import org.adrian.java.utils.TestApplication;
 import org.adrian.java.utils.jpa.PredicateUtils.ComparatorKeyword;
 import org.adrian.java.utils.sample.domain.Category;
@@ -17,6 +30,7 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.InvalidDataAccessApiUsageException;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.test.context.junit4.SpringRunner;
 
@@ -28,6 +42,9 @@ public class SpecificationUtilsTest {
 	@Autowired
 	private ItemRepository itemRepository;
 	
+	@Autowired
+	private EntityManager entityManager;
+	
 	@Test
 	public void toSpecification() {
 		
@@ -73,11 +90,135 @@ public class SpecificationUtilsTest {
 
 	}
 	
-	private void testSpecification(Specification<Item> specification, Predicate<Item> p) {
+	@Test
+	public void toSpecificationList() {
+		List<String> names = Arrays.asList("Creation", "Elektra", null, "Elektra", "Unknown");
+		Predicate<Item> p = i -> names.contains(i.getName());
+		Specification<Item> specification = SpecificationUtils.toSpecification(PropertyNames.Item.NAME, names);
+		assertEquals(2, testSpecification(specification, p));
+
+		// split in several IN lists
+		specification = SpecificationUtils.toSpecification(PropertyNames.Item.NAME, names, 2);
+		assertEquals(2, testSpecification(specification, p));
+
+		List<Integer> prices = Arrays.asList(1850, 1950, 1750);
+		p = i -> prices.contains(i.getPrice());
+		specification = SpecificationUtils.toSpecification(PropertyNames.Item.PRICE, prices, 1);
+		assertEquals(3, testSpecification(specification, p));
+
+		List<Category> categories = Arrays.asList(Category.OPERA, Category.SYMPHONIC);
+		p = i -> categories.contains(i.getCategory());
+		assertEquals(2, testSpecification(SpecificationUtils.toSpecification(PropertyNames.Item.CATEGORY, categories), p));
+
+		assertNull(SpecificationUtils.toSpecification(PropertyNames.Item.PRICE, Collections.<Integer> emptyList()));
+
+		// the values are bound, the three prices are padded to four parameters
+		CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+		CriteriaQuery<Item> query = builder.createQuery(Item.class);
+		specification = SpecificationUtils.toSpecification(PropertyNames.Item.PRICE, prices);
+		try (ParameterBindings bindings = ParameterBindings.open()) {
+			query.where(specification.toPredicate(query.from(Item.class), query, builder));
+			TypedQuery<Item> typedQuery = bindings.applyTo(entityManager.createQuery(query));
+			String jpql = typedQuery.unwrap(org.hibernate.query.Query.class).getQueryString();
+			assertEquals(4, jpql.split(":" + ParameterBindings.PARAMETER_PREFIX, -1).length - 1);
+			assertEquals(3, typedQuery.getResultList().size());
+		}
+	}
+
+	@Test
+	public void toSpecificationNestedProperty() {
+		String composer = "Haydn";
+		Predicate<Item> p = i -> i.getComposer().getName().equals(composer);
+		Specification<Item> specification = SpecificationUtils.toSpecification(PropertyNames.Item.COMPOSER_NAME, composer);
+		assertEquals(2, testSpecification(specification, p));
+
+		// both predicates share the join on composer
+		p = p.and(i -> i.getPrice() > 1600);
+		specification = Specification.where(specification)
+				.and(SpecificationUtils.toSpecification(PropertyNames.Item.COMPOSER_NAME, "Z", ComparatorKeyword.lt))
+				.and(SpecificationUtils.toSpecification(PropertyNames.Item.PRICE, 1600, ComparatorKeyword.gt));
+		assertEquals(1, testSpecification(specification, p));
+		CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+		CriteriaQuery<Item> query = builder.createQuery(Item.class);
+		Root<Item> root = query.from(Item.class);
+		specification.toPredicate(root, query, builder);
+		assertEquals(1, root.getJoins().size());
+
+		// within a query the resolved paths are shared
+		ParameterBindings bindings = ParameterBindings.open();
+		try {
+			assertSame(PredicateUtils.getPath(root, PropertyNames.Item.COMPOSER_NAME), PredicateUtils.getPath(root, PropertyNames.Item.COMPOSER_NAME));
+		} finally {
+			bindings.close();
+		}
+		assertEquals(1, root.getJoins().size());
+
+		try {
+			itemRepository.findAll(SpecificationUtils.toSpecification("composer.unknown", composer));
+			fail();
+		} catch (InvalidDataAccessApiUsageException e) {
+			assertTrue(e.getMessage().contains("Composer has no attribute unknown"));
+		}
+	}
+
+	@Test
+	public void compiledFilter() {
+		CompiledFilter<Item, Integer> maxPrice = CompiledFilter.compile(entityManager.getMetamodel(), Item.class, PropertyNames.Item.PRICE, ComparatorKeyword.le, Integer.class);
+		for (int price : new int[] { 1750, 1850 }) {
+			testSpecification(maxPrice.bind(price), i -> i.getPrice() <= price);
+		}
+		assertNull(maxPrice.bind(null));
+
+		CompiledFilter<Item, String> composer = CompiledFilter.compile(entityManager.getMetamodel(), Item.class, PropertyNames.Item.COMPOSER_NAME, ComparatorKeyword.eq, String.class);
+		assertEquals(2, testSpecification(composer.bind("Haydn"), i -> i.getComposer().getName().equals("Haydn")));
+
+		try {
+			CompiledFilter.compile(entityManager.getMetamodel(), Item.class, "composer.unknown", ComparatorKeyword.eq, String.class);
+			fail();
+		} catch (IllegalArgumentException e) {
+			assertTrue(e.getMessage().contains("Composer has no attribute unknown"));
+		}
+		try {
+			CompiledFilter.compile(entityManager.getMetamodel(), Item.class, PropertyNames.Item.PRICE, ComparatorKeyword.eq, String.class);
+			fail();
+		} catch (IllegalArgumentException e) {
+			assertTrue(e.getMessage().contains("cannot be compared"));
+		}
+	}
+
+	@Test
+	public void toParameterSpecification() {
+		for (int price : new int[] { 1750, 1850 }) {
+			Predicate<Item> p = i -> i.getPrice() > price;
+			Specification<Item> specification = SpecificationUtils.toParameterSpecification(PropertyNames.Item.PRICE, price, ComparatorKeyword.gt);
+			testSpecification(specification, p);
+			assertEquals(itemRepository.findAll(specification).size(), itemRepository.count(specification));
+		}
+
+		Category category = Category.ORATORIO;
+		Predicate<Item> p = i -> i.getCategory() == category && i.getComposer().getName().equals("Haydn");
+		Specification<Item> specification = Specification.<Item> where(SpecificationUtils.toParameterSpecification(PropertyNames.Item.CATEGORY, category))
+				.and(SpecificationUtils.toParameterSpecification(PropertyNames.Item.COMPOSER_NAME, "Haydn"));
+		assertEquals(1, testSpecification(specification, p));
+		assertNull(SpecificationUtils.toParameterSpecification(PropertyNames.Item.NAME, null));
+
+		// the values are parameters of the criteria query, not literals
+		CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+		CriteriaQuery<Item> query = builder.createQuery(Item.class);
+		try (ParameterBindings bindings = ParameterBindings.open()) {
+			query.where(specification.toPredicate(query.from(Item.class), query, builder));
+			assertEquals(2, query.getParameters().size());
+			List<Item> items = bindings.applyTo(entityManager.createQuery(query)).getResultList();
+			assertEquals(1, items.size());
+			assertEquals("Creation", items.get(0).getName());
+		}
+	}
+
+	private int testSpecification(Specification<Item> specification, Predicate<Item> p) {
 		TestUtils.debug(() -> "---------------------------");
-		itemRepository.findAll(specification)
-		.stream()
-		.forEach(i -> checkPredicate(i, p));
+		List<Item> items = itemRepository.findAll(specification);
+		items.forEach(i -> checkPredicate(i, p));
+		return items.size();
 	}
 
 	private void checkPredicate(Item bean, Predicate<Item> p) {
@@ -0,0 +1,20 @@
+package org.adrian.java.utils.sample.domain;
+
+import javax.persistence.Entity;
+
+import org.adrian.java.utils.jpa.BaseEntity;
+
+@Entity
+public class Composer extends BaseEntity {
+
+	private String name;
+	
+	public String getName() {
+		return name;
+	}
+
+	public void setName(String name) {
+		this.name = name;
+	}
+	
+}
@@ -3,6 +3,7 @@ package org.adrian.java.utils.sample.domain;
 import java.util.Date;
 
 import javax.persistence.Entity;
+import javax.persistence.ManyToOne;
 
 import org.adrian.java.utils.jpa.BaseEntity;
 
@@ -17,6 +18,9 @@ public class Item extends BaseEntity {
 	
 	private Category category;
 	
+	@ManyToOne
+	private Composer composer;
+	
 	public String getName() {
 		return name;
 	}
@@ -48,5 +52,13 @@ public class Item extends BaseEntity {
 	public void setCategory(Category category) {
 		this.category = category;
 	}
+
+	public Composer getComposer() {
+		return composer;
+	}
+
+	public void setComposer(Composer composer) {
+		this.composer = composer;
+	}
 	
 }
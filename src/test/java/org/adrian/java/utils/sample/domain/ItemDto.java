@@ -5,6 +5,14 @@ public class ItemDto {
 	private String name;
 	private Integer price;
 
+	public ItemDto() {
+	}
+
+	public ItemDto(String name, Integer price) {
+		this.name = name;
+		this.price = price;
+	}
+
 	public String getName() {
 		return name;
 	}
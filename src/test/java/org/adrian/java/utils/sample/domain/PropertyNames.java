@@ -10,6 +10,14 @@ public class PropertyNames {
 		public static final String DATE_OF_PURCHASE = "dateOfPurchase";
 		
 		public static final String CATEGORY = "category";
+		
+		public static final String COMPOSER = "composer";
+		
+		public static final String COMPOSER_NAME = "composer.name";
+	}
+
+	public class Composer {
+		public static final String NAME = "name";
 	}
 
 }
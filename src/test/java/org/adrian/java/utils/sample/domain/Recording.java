@@ -0,0 +1,20 @@
+package org.adrian.java.utils.sample.domain;
+
+import javax.persistence.Entity;
+
+import org.adrian.java.utils.jpa.SequenceBaseEntity;
+
+@Entity
+public class Recording extends SequenceBaseEntity {
+
+	private String title;
+	
+	public String getTitle() {
+		return title;
+	}
+
+	public void setTitle(String title) {
+		this.title = title;
+	}
+	
+}
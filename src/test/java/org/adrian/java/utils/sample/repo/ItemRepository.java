@@ -1,8 +1,8 @@
 package org.adrian.java.utils.sample.repo;
 
-import org.adrian.java.utils.jpa.BaseRepository;
+import org.adrian.java.utils.jpa.ExtendedRepository;
 import org.adrian.java.utils.sample.domain.Item;
 
-public interface ItemRepository extends BaseRepository<Item> {
+public interface ItemRepository extends ExtendedRepository<Item> {
 
 }
@@ -0,0 +1,8 @@
+package org.adrian.java.utils.sample.repo;
+
+import org.adrian.java.utils.jpa.ExtendedRepository;
+import org.adrian.java.utils.sample.domain.Recording;
+
+public interface RecordingRepository extends ExtendedRepository<Recording> {
+
+}
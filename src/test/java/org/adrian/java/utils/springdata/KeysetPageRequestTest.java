@@ -0,0 +1,162 @@
+package org.adrian.java.utils.springdata;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.adrian.java.utils.TestApplication;
+import org.adrian.java.utils.jpa.PredicateUtils.ComparatorKeyword;
+import org.adrian.java.utils.jpa.SpecificationUtils;
+import org.adrian.java.utils.sample.domain.Item;
+import org.adrian.java.utils.sample.domain.PropertyNames;
+import org.adrian.java.utils.sample.repo.ItemRepository;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.test.context.junit4.SpringRunner;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = TestApplication.class)
+public class KeysetPageRequestTest {
+
+	@Autowired
+	private ItemRepository itemRepository;
+
+	@Test
+	public void pages() {
+		Sort sort = Sort.by(PropertyNames.Item.PRICE).descending();
+		assertEquals(ids(null, sort, 10), ids(null, sort, 1));
+		assertEquals(ids(null, sort, 10), ids(null, sort, 3));
+
+		// ties on the composer are broken by the id
+		sort = Sort.by(PropertyNames.Item.COMPOSER_NAME, PropertyNames.Item.NAME);
+		assertEquals(ids(null, sort, 10), ids(null, sort, 1));
+		sort = Sort.by(PropertyNames.Item.COMPOSER_NAME);
+		assertEquals(ids(null, sort, 10), ids(null, sort, 2));
+
+		sort = Sort.by(PropertyNames.Item.CATEGORY, PropertyNames.Item.DATE_OF_PURCHASE);
+		assertEquals(ids(null, sort, 10), ids(null, sort, 1));
+
+		Specification<Item> filter = SpecificationUtils.toSpecification(PropertyNames.Item.PRICE, 1600, ComparatorKeyword.gt);
+		sort = Sort.by(PropertyNames.Item.NAME);
+		List<Long> ids = ids(filter, sort, 2);
+		assertEquals(3, ids.size());
+		assertEquals(ids(filter, sort, 10), ids);
+	}
+
+	@Test
+	public void invalidToken() {
+		KeysetPageRequest request = KeysetPageRequestBuilder.of(1, Sort.by(PropertyNames.Item.PRICE)).build();
+		String token = request.nextToken(itemRepository.findSlice(request.toSpecification(null), request.pageable()));
+		assertNotNull(token);
+		try {
+			KeysetPageRequestBuilder.of(1, Sort.by(PropertyNames.Item.NAME)).token(token).build();
+			fail();
+		} catch (IllegalArgumentException e) {
+			// expected, the token belongs to another sort
+		}
+		try {
+			KeysetPageRequestBuilder.of(1, Sort.by(PropertyNames.Item.PRICE)).token("not a token").build();
+			fail();
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void keyTypes() {
+		Timestamp timestamp = Timestamp.valueOf("2019-01-28 10:15:30.123456789");
+		Key key = new Key();
+		key.setSmall((short) 7);
+		key.setRatio(0.1f);
+		key.setTimestamp(timestamp);
+		key.setDay(LocalDate.of(2019, 1, 28));
+		key.setId(42L);
+		Sort sort = Sort.by("small", "ratio", "timestamp", "day");
+
+		String token = KeysetPageRequestBuilder.of(1, sort).build().nextToken(Collections.singletonList(key));
+		Object[] keys = KeysetPageRequestBuilder.of(1, sort).token(token).build().keys();
+		assertEquals(Arrays.asList((short) 7, 0.1f, timestamp, LocalDate.of(2019, 1, 28), 42L), Arrays.asList(keys));
+		assertEquals(Timestamp.class, keys[2].getClass());
+		assertEquals(123456789, ((Timestamp) keys[2]).getNanos());
+	}
+
+	public static class Key {
+
+		private Short small;
+		private Float ratio;
+		private Timestamp timestamp;
+		private LocalDate day;
+		private Long id;
+
+		public Short getSmall() {
+			return small;
+		}
+
+		public void setSmall(Short small) {
+			this.small = small;
+		}
+
+		public Float getRatio() {
+			return ratio;
+		}
+
+		public void setRatio(Float ratio) {
+			this.ratio = ratio;
+		}
+
+		public Timestamp getTimestamp() {
+			return timestamp;
+		}
+
+		public void setTimestamp(Timestamp timestamp) {
+			this.timestamp = timestamp;
+		}
+
+		public LocalDate getDay() {
+			return day;
+		}
+
+		public void setDay(LocalDate day) {
+			this.day = day;
+		}
+
+		public Long getId() {
+			return id;
+		}
+
+		public void setId(Long id) {
+			this.id = id;
+		}
+	}
+
+	/**
+	 * Reads all pages, following the continuation tokens.
+	 */
+	private List<Long> ids(Specification<Item> filter, Sort sort, int pageSize) {
+		List<Long> ids = new ArrayList<>();
+		String token = null;
+		do {
+			KeysetPageRequest request = KeysetPageRequestBuilder.of(pageSize, sort).token(token).build();
+			Slice<Item> items = itemRepository.findSlice(request.toSpecification(filter), request.pageable());
+			ids.addAll(items.stream().map(Item::getId).collect(Collectors.toList()));
+			token = request.nextToken(items);
+		} while (token != null);
+		assertNull(KeysetPageRequestBuilder.of(pageSize, sort).token(null).build().getToken());
+		return ids;
+	}
+
+}
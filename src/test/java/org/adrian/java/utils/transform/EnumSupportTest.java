@@ -2,12 +2,18 @@ package org.adrian.java.utils.transform;
 
 import static org.junit.Assert.*;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.EnumSet;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.function.Function;
 
 import org.adrian.java.utils.exception.UnknownEnumValueException;
 import org.junit.Test;
@@ -28,6 +34,10 @@ public class EnumSupportTest {
 		}
 	}
 	
+	private enum WideEnum {
+		C0, C1, C2, C3, C4, C5, C6, C7, C8, C9, C10, C11, C12, C13, C14, C15, C16, C17, C18, C19, C20, C21, C22, C23, C24, C25, C26, C27, C28, C29, C30, C31, C32, C33, C34, C35, C36, C37, C38, C39, C40, C41, C42, C43, C44, C45, C46, C47, C48, C49, C50, C51, C52, C53, C54, C55, C56, C57, C58, C59, C60, C61, C62, C63, C64, C65, C66
+	}
+	
 	@Test
 	public void getEnumValues() {
 		getEnumValues(TestEnum.values());
@@ -67,6 +77,32 @@ public class EnumSupportTest {
 		EnumSupport<TestEnum, String> enumSupport = EnumSupport.defaultSupport(TestEnum.values());
 		List<String> names = enumSupport.idValuesComplementOf(EnumSet.of(TestEnum.CDE));
 		assertEquals("[ABC, BCD, DEF]", names.toString());
+		// cached per set of enums to skip
+		assertSame(names, enumSupport.idValuesComplementOf(EnumSet.of(TestEnum.CDE)));
+		assertEquals("[ABC, CDE, DEF]", enumSupport.idValuesComplementOf(EnumSet.of(TestEnum.BCD)).toString());
+		assertEquals("[ABC, BCD, CDE, DEF]", enumSupport.idValuesComplementOf(EnumSet.noneOf(TestEnum.class)).toString());
+		try {
+			names.add("XYZ");
+			fail();
+		} catch (UnsupportedOperationException e) {
+			// unmodifiable
+		}
+
+		// ordinals of enums which are not part of the enumValues do not wrap around
+		EnumSupport<WideEnum, String> subset = EnumSupport.defaultSupport(new WideEnum[] { WideEnum.C0, WideEnum.C1, WideEnum.C2 });
+		assertEquals("[C0, C1, C2]", subset.idValuesComplementOf(EnumSet.of(WideEnum.C65)).toString());
+		assertEquals("[C0, C2]", subset.idValuesComplementOf(EnumSet.of(WideEnum.C1, WideEnum.C65)).toString());
+
+		// masks of the high ordinals are cached as well, and past the cache limit the complements are still computed
+		EnumSupport<WideEnum, String> wide = EnumSupport.defaultSupport(Arrays.copyOf(WideEnum.values(), Long.SIZE));
+		List<String> highComplement = wide.idValuesComplementOf(EnumSet.range(WideEnum.C7, WideEnum.C63));
+		assertEquals("[C0, C1, C2, C3, C4, C5, C6]", highComplement.toString());
+		assertSame(highComplement, wide.idValuesComplementOf(EnumSet.range(WideEnum.C7, WideEnum.C63)));
+		for (WideEnum skipped : EnumSet.range(WideEnum.C0, WideEnum.C63)) {
+			List<String> complement = wide.idValuesComplementOf(EnumSet.complementOf(EnumSet.of(skipped, WideEnum.C64, WideEnum.C65, WideEnum.C66)));
+			assertEquals(Collections.singletonList(skipped.name()), complement);
+		}
+		assertSame(highComplement, wide.idValuesComplementOf(EnumSet.range(WideEnum.C7, WideEnum.C63)));
 	}
 
 	@Test
@@ -141,5 +177,160 @@ public class EnumSupportTest {
 		assertEquals(TestEnum.DEF, enumSupport.toEnumFailSafe(999));
 	}
 
+	@Test
+	public void toEnumIgnoreCase() {
+		EnumSupport<TestEnum, String> enumSupport = EnumSupport.defaultSupport(TestEnum.values(), TestEnum.DEF);
+		assertEquals(TestEnum.BCD, enumSupport.toEnumIgnoreCase("bcd"));
+		assertEquals(TestEnum.BCD, enumSupport.toEnumIgnoreCase(" \tBcD \r\n"));
+		assertEquals(TestEnum.CDE, enumSupport.toEnumIgnoreCase(new StringBuilder("cdE")));
+		assertNull(enumSupport.toEnumIgnoreCase(null));
+		assertEquals(TestEnum.DEF, enumSupport.toEnumFailSafeIgnoreCase("b cd"));
+		assertEquals(TestEnum.DEF, enumSupport.toEnumFailSafeIgnoreCase("  "));
+		try {
+			enumSupport.toEnumIgnoreCase("xyz");
+			fail();
+		} catch (UnknownEnumValueException e) {
+			assertEquals("TestEnum : unknown value (xyz), supported values are : [ABC, BCD, CDE, DEF]", e.getMessage());
+		}
+
+		// matches the text of non-string ids
+		EnumSupport<TestEnum, Integer> byCode = new EnumSupport<>(TestEnum.values(), TestEnum::getCode);
+		assertEquals(TestEnum.CDE, byCode.toEnumIgnoreCase(" 3 "));
+
+		EnumSupport<TestEnum, String> ambiguous = new EnumSupport<>(TestEnum.values(), e -> e == TestEnum.ABC ? "def" : e.name());
+		assertEquals(TestEnum.ABC, ambiguous.toEnum("def"));
+		try {
+			ambiguous.toEnumIgnoreCase("def");
+			fail();
+		} catch (IllegalStateException e) {
+			// "def" and "DEF" are equal ignoring case
+		}
+	}
+
+	@Test
+	public void toEnumFromRange() {
+		EnumSupport<TestEnum, String> enumSupport = EnumSupport.defaultSupport(TestEnum.values(), TestEnum.ABC);
+		String line = "x;CDE;DEF;";
+		assertEquals(TestEnum.CDE, enumSupport.toEnum(line, 2, 5));
+		assertEquals(TestEnum.DEF, enumSupport.toEnum(line.toCharArray(), 6, 9));
+		assertEquals(TestEnum.CDE, enumSupport.toEnum(ByteBuffer.wrap(line.getBytes(StandardCharsets.UTF_8)), 2, 5));
+		assertEquals(TestEnum.ABC, enumSupport.toEnumFailSafe(line, 2, 6));
+		assertEquals(TestEnum.ABC, enumSupport.toEnumFailSafe(line.toCharArray(), 0, 0));
+		assertNull(enumSupport.toEnumFailSafe((ByteBuffer) null, 0, 0));
+		try {
+			enumSupport.toEnum(line, 0, 5);
+			fail();
+		} catch (UnknownEnumValueException e) {
+			assertEquals("TestEnum : unknown value (x;CDE), supported values are : [ABC, BCD, CDE, DEF]", e.getMessage());
+		}
+
+		// multi-byte characters
+		EnumSupport<TestEnum, String> accents = new EnumSupport<>(TestEnum.values(), e -> e.name() + "\u00e9\u20ac\ud83c\udfb5");
+		byte[] bytes = ("--" + accents.toId(TestEnum.BCD)).getBytes(StandardCharsets.UTF_8);
+		ByteBuffer buffer = ByteBuffer.wrap(bytes);
+		assertEquals(TestEnum.BCD, accents.toEnum(buffer, 2, bytes.length));
+		assertEquals(0, buffer.position());
+		assertNull(accents.toEnumFailSafe(buffer, 2, bytes.length - 1));
+	}
+
+	@Test
+	public void cached() {
+		EnumSupport<TestEnum, String> byName = EnumSupport.defaultSupport(TestEnum.class);
+		assertSame(byName, EnumSupport.defaultSupport(TestEnum.class));
+		assertSame(byName, EnumSupport.cached(TestEnum.class, EnumSupport.getDefaultFunction()));
+		assertNotSame(byName, EnumSupport.defaultSupport(TestEnum.class, TestEnum.ABC));
+		assertEquals(TestEnum.ABC, EnumSupport.defaultSupport(TestEnum.class, TestEnum.ABC).toEnumFailSafe("xyz"));
+
+		Function<TestEnum, Integer> byCode = TestEnum::getCode;
+		EnumSupport<TestEnum, Integer> enumSupport = EnumSupport.cached(TestEnum.class, byCode);
+		assertSame(enumSupport, EnumSupport.cached(TestEnum.class, byCode));
+		assertSame(EnumSupport.cached(TestEnum.class, byCode, TestEnum.DEF), EnumSupport.cached(TestEnum.class, byCode, TestEnum.DEF));
+		assertNotSame(enumSupport, EnumSupport.cached(TestEnum.class, byCode, TestEnum.DEF));
+		assertEquals(TestEnum.BCD, enumSupport.toEnum(2));
+
+		// functions created per call are not cached beyond the bound
+		for (int i = 0; i < EnumSupport.MAX_CACHED_FUNCTIONS + 1; i++) {
+			int offset = i;
+			Function<TestEnum, Integer> perCall = e -> e.getCode() + offset;
+			assertEquals(TestEnum.ABC, EnumSupport.cached(TestEnum.class, perCall).toEnum(1 + i));
+		}
+		Function<TestEnum, Integer> uncached = TestEnum::getCode;
+		assertNotSame(EnumSupport.cached(TestEnum.class, uncached), EnumSupport.cached(TestEnum.class, uncached));
+		assertSame(enumSupport, EnumSupport.cached(TestEnum.class, byCode));
+	}
+
+	@Test
+	public void unknownIdHandler() {
+		AggregatingUnknownIdHandler handler = new AggregatingUnknownIdHandler(Duration.ofHours(1), 2);
+		EnumSupport<TestEnum, Integer> enumSupport = new EnumSupport<>(TestEnum.values(), TestEnum::getCode, TestEnum.DEF, handler);
+		for (int i = 0; i < 5; i++) {
+			assertEquals(TestEnum.DEF, enumSupport.toEnumFailSafe(999));
+		}
+		assertEquals(TestEnum.DEF, enumSupport.toEnumFailSafe(Integer.valueOf(998)));
+		assertEquals(TestEnum.DEF, enumSupport.toEnumFailSafe(997));
+		assertEquals(TestEnum.ABC, enumSupport.toEnumFailSafe(1));
+
+		Map<Object, Long> counts = handler.getUnknownIdCounts(enumSupport);
+		assertEquals(Long.valueOf(5), counts.get(999));
+		assertEquals(Long.valueOf(1), counts.get(998));
+		assertEquals(2, counts.size());
+		assertEquals(1, handler.getUntrackedCount(enumSupport));
+		assertEquals("[1, 2, 3, 4]", enumSupport.supportedIdValues());
+
+		handler.reset();
+		assertTrue(handler.getUnknownIdCounts(enumSupport).isEmpty());
+	}
+
+	@Test
+	public void toId() {
+		EnumSupport<TestEnum, Integer> enumSupport = new EnumSupport<>(new TestEnum[] { TestEnum.BCD, TestEnum.DEF }, TestEnum::getCode);
+		assertEquals(Integer.valueOf(2), enumSupport.toId(TestEnum.BCD));
+		assertEquals(4, enumSupport.toIntId(TestEnum.DEF));
+		assertNull(enumSupport.toId(null));
+		// not part of the enumValues, falls back to the function
+		assertEquals(Integer.valueOf(1), enumSupport.toId(TestEnum.ABC));
+		assertEquals(3, enumSupport.toIntId(TestEnum.CDE));
+
+		try {
+			EnumSupport.defaultSupport(TestEnum.values()).toIntId(TestEnum.ABC);
+			fail();
+		} catch (UnsupportedOperationException e) {
+			// ids are names
+		}
+	}
+
+	@Test
+	public void toEnumIntegral() {
+		// dense range, looked up by index
+		EnumSupport<TestEnum, Integer> dense = new EnumSupport<>(TestEnum.values(), TestEnum::getCode, TestEnum.DEF);
+		assertEquals(TestEnum.CDE, dense.toEnumByInt(3));
+		assertEquals(TestEnum.CDE, dense.toEnum(Integer.valueOf(3)));
+		assertEquals(TestEnum.DEF, dense.toEnumFailSafeByInt(0));
+		assertEquals(TestEnum.DEF, dense.toEnumFailSafeByInt(Integer.MIN_VALUE));
+		assertEquals(TestEnum.DEF, dense.toEnumFailSafeByInt(Integer.MAX_VALUE));
+
+		// sparse range, looked up by hash
+		EnumSupport<TestEnum, Integer> sparse = new EnumSupport<>(TestEnum.values(), e -> e.getCode() * 1_000_000);
+		assertEquals(TestEnum.BCD, sparse.toEnumByInt(2_000_000));
+		assertNull(sparse.toEnumFailSafeByInt(2));
+
+		EnumSupport<TestEnum, Short> shorts = new EnumSupport<>(TestEnum.values(), e -> (short) (e.getCode() * 10_000));
+		assertEquals(TestEnum.CDE, shorts.toEnumByInt(30_000));
+		assertEquals(TestEnum.CDE, shorts.toEnum((short) 30_000));
+		assertNull(shorts.toEnumFailSafeByInt(30_000 + 65_536));
+
+		// char ids are boxed, not widened to int
+		EnumSupport<TestEnum, Character> chars = new EnumSupport<>(TestEnum.values(), e -> e.name().toLowerCase().charAt(0));
+		assertEquals(TestEnum.ABC, chars.toEnum('a'));
+		assertEquals(TestEnum.DEF, chars.toEnumFailSafe('d'));
+
+		try {
+			EnumSupport.defaultSupport(TestEnum.values()).toEnumByInt(1);
+			fail();
+		} catch (UnsupportedOperationException e) {
+			// ids are names
+		}
+	}
+
 	
 }
@@ -0,0 +1,105 @@
+package org.adrian.java.utils.transform;
+
+import java.util.concurrent.TimeUnit;
+
+import org.adrian.java.utils.sample.domain.Composer;
+import org.adrian.java.utils.sample.domain.Item;
+import org.adrian.java.utils.sample.domain.ItemDto;
+import org.adrian.java.utils.sample.domain.PropertyNames;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares a hand-written {@link GenericTransformer} with one built by {@link GenericTransformerBuilder}.
+ * With {@code polluted} other built transformers run first, so the call sites shared by all transformers are
+ * megamorphic as they are in an application using many of them, while those of the mappings of each built transformer
+ * stay monomorphic.
+ * <p>
+ * Not run by the build, start {@link #main(String[])} from the test class path.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GenericTransformerBenchmark {
+
+	@Param({ "false", "true" })
+	private boolean polluted;
+
+	private GenericTransformer<Item, ItemDto> handWritten;
+
+	private GenericTransformer<Item, ItemDto> built;
+
+	private Item item;
+
+	// keeps the results of the polluting transformations alive
+	private Object sink;
+
+	@Setup
+	public void setup() {
+		handWritten = new GenericTransformer<>(ItemDto::new, (source, target) -> {
+			target.setName(source.getName());
+			target.setPrice(source.getPrice());
+		});
+		built = GenericTransformerBuilder.of(Item.class, ItemDto.class, ItemDto::new)
+				.property(PropertyNames.Item.NAME)
+				.property(PropertyNames.Item.PRICE)
+				.build();
+		item = new Item();
+		item.setName("Elektra");
+		item.setPrice(1750);
+		if (polluted) {
+			pollute();
+		}
+	}
+
+	private void pollute() {
+		Composer composer = new Composer();
+		composer.setName("Strauss");
+		GenericTransformer<Composer, ItemDto> byName = GenericTransformerBuilder.of(Composer.class, ItemDto.class, ItemDto::new)
+				.property(PropertyNames.Composer.NAME)
+				.build();
+		GenericTransformer<Item, Item> copy = GenericTransformerBuilder.of(Item.class, Item.class, Item::new)
+				.property(PropertyNames.Item.NAME)
+				.property(PropertyNames.Item.PRICE)
+				.property(PropertyNames.Item.COMPOSER)
+				.build();
+		GenericTransformer<Item, ItemDto> mapped = GenericTransformerBuilder.of(Item.class, ItemDto.class, ItemDto::new)
+				.map(Item::getName, ItemDto::setName)
+				.map(Item::getPrice, ItemDto::setPrice)
+				.build();
+		for (int i = 0; i < 100_000; i++) {
+			sink = byName.apply(composer);
+			sink = copy.apply(item);
+			sink = mapped.apply(item);
+		}
+	}
+
+	@Benchmark
+	public ItemDto handWritten() {
+		return handWritten.apply(item);
+	}
+
+	@Benchmark
+	public ItemDto built() {
+		return built.apply(item);
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(GenericTransformerBenchmark.class.getSimpleName()).build()).run();
+	}
+}
@@ -1,14 +1,102 @@
 package org.adrian.java.utils.transform;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
 
 import org.adrian.java.utils.sample.domain.Item;
 import org.adrian.java.utils.sample.domain.ItemDto;
+import org.adrian.java.utils.sample.domain.PropertyNames;
 import org.apache.commons.lang3.builder.ToStringBuilder;
 import org.junit.Test;
 
 public class GenericTransformerTest {
 
+	private static class Node {
+		private String name;
+		private Node parent;
+	}
+
+	private static class NodeDto {
+		private String name;
+		private NodeDto parent;
+	}
+
+	public static class Measure {
+		private int count;
+		private double weight;
+
+		public int getCount() {
+			return count;
+		}
+
+		public void setCount(int count) {
+			this.count = count;
+		}
+
+		public double getWeight() {
+			return weight;
+		}
+
+		public void setWeight(double weight) {
+			this.weight = weight;
+		}
+	}
+
+	public static class MeasureDto {
+		private Integer count;
+		private double weight;
+
+		public Integer getCount() {
+			return count;
+		}
+
+		public void setCount(Integer count) {
+			this.count = count;
+		}
+
+		public double getWeight() {
+			return weight;
+		}
+
+		public void setWeight(double weight) {
+			this.weight = weight;
+		}
+	}
+
+	// not public, its accessors cannot be invoked by the generated class
+	static class HiddenMeasure {
+		private Integer count;
+		private double weight;
+
+		public Integer getCount() {
+			return count;
+		}
+
+		public void setCount(Integer count) {
+			this.count = count;
+		}
+
+		public double getWeight() {
+			return weight;
+		}
+
+		public void setWeight(double weight) {
+			this.weight = weight;
+		}
+	}
+
 	@Test
 	public void test() {
 		GenericTransformer<Item, ItemDto> transformer = new GenericTransformer<>(ItemDto::new, (item, itemDto) -> {
@@ -31,6 +119,282 @@ public class GenericTransformerTest {
 		
 	}
 	
+	@Test
+	public void batch() {
+		GenericTransformer<Item, ItemDto> transformer = new GenericTransformer<>(ItemDto::new, (item, itemDto) -> {
+			itemDto.setName(item.getName());
+			itemDto.setPrice(item.getPrice());
+		});
+		List<Item> items = new ArrayList<>();
+		for (int price : new int[] { 50, 20, 40, 10, 30 }) {
+			Item item = new Item();
+			item.setName("item" + price);
+			item.setPrice(price);
+			items.add(item);
+		}
+		Comparator<ItemDto> byPrice = Comparator.comparing(ItemDto::getPrice);
+
+		List<ItemDto> cheapest = transformer.apply(items, byPrice, 3);
+		assertEquals(Arrays.asList(10, 20, 30), prices(cheapest));
+		assertEquals(5, transformer.apply(items, byPrice, 10).size());
+		assertTrue(transformer.apply(items, byPrice, 0).isEmpty());
+
+		// conditional updates must not leak values from previously transformed sources
+		GenericTransformer<Item, ItemDto> conditional = new GenericTransformer<>(ItemDto::new, (item, itemDto) -> {
+			if (item.getPrice() > 20) {
+				itemDto.setName(item.getName());
+			}
+			itemDto.setPrice(item.getPrice());
+		});
+		List<ItemDto> partial = conditional.apply(items, byPrice, 2);
+		assertEquals(Arrays.asList(10, 20), prices(partial));
+		assertEquals(Arrays.asList(null, null), partial.stream().map(ItemDto::getName).collect(Collectors.toList()));
+
+		// equal targets stay in the order of their sources, as with a full sort
+		List<Item> ties = new ArrayList<>();
+		for (String name : new String[] { "a", "b", "c", "d" }) {
+			Item item = new Item();
+			item.setName(name);
+			item.setPrice(name.equals("c") ? 0 : 1);
+			ties.add(item);
+		}
+		for (int limit = 1; limit <= ties.size(); limit++) {
+			assertEquals(names(transformer.apply(ties, byPrice).subList(0, limit)), names(transformer.apply(ties, byPrice, limit)));
+		}
+		assertEquals(Arrays.asList("c", "a"), names(transformer.apply(ties, byPrice, 2)));
+
+		List<Item> withNull = new ArrayList<>(items);
+		withNull.add(null);
+		Comparator<ItemDto> nullsFirst = Comparator.nullsFirst(byPrice);
+		List<ItemDto> first = transformer.apply(withNull, nullsFirst, 3);
+		assertEquals(null, first.get(0));
+		assertEquals(Arrays.asList(10, 20), prices(first.subList(1, 3)));
+		assertEquals(Arrays.asList(10, 20, 30), prices(transformer.apply(withNull, Comparator.nullsLast(byPrice), 3)));
+
+		ItemDto[] array = transformer.apply(items, new ItemDto[items.size()]);
+		assertEquals(Integer.valueOf(40), array[2].getPrice());
+
+		List<ItemDto> pool = transformer.apply(items.subList(0, 2));
+		ItemDto reused = pool.get(0);
+		transformer.applyReusing(items.subList(2, 5), pool);
+		assertEquals(Arrays.asList(40, 10, 30), prices(pool));
+		assertSame(reused, pool.get(0));
+		transformer.applyReusing(items.subList(0, 1), pool);
+		assertEquals(Arrays.asList(50), prices(pool));
+	}
+
+	@Test
+	public void parallel() {
+		GenericTransformer<Item, ItemDto> transformer = new GenericTransformer<>(ItemDto::new, (item, itemDto) -> {
+			itemDto.setName(item.getName());
+			itemDto.setPrice(item.getPrice());
+		});
+		List<Item> items = new ArrayList<>();
+		for (int i = 0; i < 10_000; i++) {
+			Item item = new Item();
+			item.setName("item" + i);
+			item.setPrice((i * 7919) % 1000);
+			items.add(item);
+		}
+		Comparator<ItemDto> byPrice = Comparator.comparing(ItemDto::getPrice);
+
+		List<ItemDto> ordered = transformer.applyParallel(items);
+		assertEquals(prices(transformer.apply(items)), prices(ordered));
+
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			List<ItemDto> sorted = transformer.applyParallel(items, byPrice, pool, 100);
+			List<ItemDto> expected = transformer.apply(items, byPrice);
+			assertEquals(prices(expected), prices(sorted));
+			// stable sort, same order for equal prices
+			assertEquals(expected.stream().map(ItemDto::getName).collect(Collectors.toList()),
+					sorted.stream().map(ItemDto::getName).collect(Collectors.toList()));
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	@Test
+	public void lazy() {
+		GenericTransformer<Item, ItemDto> transformer = new GenericTransformer<>(ItemDto::new, (item, itemDto) -> {
+			itemDto.setName(item.getName());
+			itemDto.setPrice(item.getPrice());
+		});
+		List<Item> items = new ArrayList<>();
+		for (int price = 1; price <= 7; price++) {
+			Item item = new Item();
+			item.setName("item" + price);
+			item.setPrice(price);
+			items.add(item);
+		}
+
+		assertEquals(Arrays.asList(1, 2, 3, 4, 5, 6, 7), prices(transformer.apply(items.stream()).collect(Collectors.toList())));
+		assertEquals(Integer.valueOf(1), transformer.apply(items.iterator()).next().getPrice());
+		assertEquals(28, StreamSupport.stream(transformer.apply(items.spliterator()), true).mapToInt(ItemDto::getPrice).sum());
+
+		List<Integer> chunkSizes = new ArrayList<>();
+		long count = transformer.applyInChunks(items.stream(), 3, chunk -> chunkSizes.add(chunk.size()));
+		assertEquals(7, count);
+		assertEquals(Arrays.asList(3, 3, 1), chunkSizes);
+	}
+
+	@Test
+	public void builder() {
+		GenericTransformer<Item, ItemDto> transformer = GenericTransformerBuilder.of(Item.class, ItemDto.class, ItemDto::new)
+				.property(PropertyNames.Item.NAME)
+				.map(Item::getPrice, ItemDto::setPrice)
+				.build();
+		Item item = new Item();
+		item.setName("goody");
+		item.setPrice(34);
+
+		ItemDto dto = transformer.apply(item);
+		verifyEquals(item, dto);
+		assertEquals(item.getPrice(), dto.getPrice());
+
+		dto = GenericTransformerBuilder.of(Item.class, ItemDto.class, ItemDto::new)
+				.property(PropertyNames.Item.PRICE)
+				.build()
+				.apply(item);
+		assertEquals(item.getPrice(), dto.getPrice());
+
+		try {
+			GenericTransformerBuilder.of(Item.class, ItemDto.class, ItemDto::new).property(PropertyNames.Item.NAME, PropertyNames.Item.PRICE);
+			fail();
+		} catch (IllegalArgumentException e) {
+			// String cannot be assigned to Integer
+		}
+		try {
+			GenericTransformerBuilder.of(Item.class, ItemDto.class, ItemDto::new).property(PropertyNames.Item.CATEGORY);
+			fail();
+		} catch (IllegalArgumentException e) {
+			// no such target property
+		}
+	}
+
+	@Test
+	public void update() {
+		MappedTransformer<Item, ItemDto> transformer = GenericTransformerBuilder.of(Item.class, ItemDto.class, ItemDto::new)
+				.property(PropertyNames.Item.NAME)
+				.map(Item::getPrice, ItemDto::getPrice, ItemDto::setPrice)
+				.map(Item::getPrice, (itemDto, price) -> { })
+				.build();
+		Item item = new Item();
+		item.setName("goody");
+		item.setPrice(34);
+		ItemDto dto = transformer.apply(item);
+
+		// the last mapping has no target getter and is always written
+		assertEquals(0b100, transformer.update(item, dto));
+
+		item.setPrice(45);
+		long changes = transformer.update(item, dto);
+		assertEquals(0b110, changes);
+		assertEquals(Integer.valueOf(45), dto.getPrice());
+		assertEquals(Arrays.asList(null, null), transformer.changedPropertyNames(changes));
+
+		item.setName("goodie");
+		changes = transformer.update(item, dto);
+		assertEquals(Arrays.asList(PropertyNames.Item.NAME, null), transformer.changedPropertyNames(changes));
+		verifyEquals(item, dto);
+
+		// the change mask has one bit per mapping
+		GenericTransformerBuilder<Item, ItemDto> builder = GenericTransformerBuilder.of(Item.class, ItemDto.class, ItemDto::new);
+		for (int i = 0; i < MappedTransformer.MAX_UPDATE_MAPPINGS; i++) {
+			builder.map(Item::getPrice, ItemDto::setPrice);
+		}
+		assertEquals(MappedTransformer.MAX_UPDATE_MAPPINGS, builder.build().getPropertyNames().size());
+		try {
+			builder.map(Item::getPrice, ItemDto::setPrice).build();
+			fail();
+		} catch (IllegalStateException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void builderAccessors() {
+		// primitive values are boxed and unboxed
+		MappedTransformer<Measure, MeasureDto> transformer = GenericTransformerBuilder.of(Measure.class, MeasureDto.class, MeasureDto::new)
+				.property("count")
+				.property("weight")
+				.build();
+		Measure measure = new Measure();
+		measure.setCount(3);
+		measure.setWeight(1.5);
+		MeasureDto dto = transformer.apply(measure);
+		assertEquals(Integer.valueOf(3), dto.getCount());
+		assertEquals(1.5, dto.getWeight(), 0);
+		measure.setWeight(2.5);
+		assertEquals(0b10, transformer.update(measure, dto));
+		assertEquals(2.5, dto.getWeight(), 0);
+		assertEquals(0, transformer.update(measure, dto));
+
+		Measure copy = GenericTransformerBuilder.of(MeasureDto.class, Measure.class, Measure::new)
+				.property("count")
+				.build()
+				.apply(dto);
+		assertEquals(3, copy.getCount());
+
+		// falls back to functions for the accessors of classes that are not public
+		MappedTransformer<Measure, HiddenMeasure> hidden = GenericTransformerBuilder.of(Measure.class, HiddenMeasure.class, HiddenMeasure::new)
+				.property("count")
+				.map(Measure::getWeight, HiddenMeasure::getWeight, HiddenMeasure::setWeight)
+				.build();
+		HiddenMeasure hiddenDto = hidden.apply(measure);
+		assertEquals(Integer.valueOf(3), hiddenDto.getCount());
+		assertEquals(2.5, hiddenDto.getWeight(), 0);
+		measure.setCount(4);
+		assertEquals(0b01, hidden.update(measure, hiddenDto));
+		assertEquals(Integer.valueOf(4), hiddenDto.getCount());
+	}
+
+	@Test
+	public void memoized() {
+		AtomicInteger created = new AtomicInteger();
+		AtomicReference<GenericTransformer<Node, NodeDto>> self = new AtomicReference<>();
+		GenericTransformer<Node, NodeDto> transformer = new GenericTransformer<Node, NodeDto>(() -> {
+			created.incrementAndGet();
+			return new NodeDto();
+		}, (node, nodeDto, context) -> {
+			nodeDto.name = node.name;
+			nodeDto.parent = self.get().apply(node.parent, context);
+		});
+		self.set(transformer);
+
+		Node root = new Node();
+		root.name = "root";
+		List<Node> nodes = new ArrayList<>();
+		for (int i = 0; i < 3; i++) {
+			Node child = new Node();
+			child.name = "child" + i;
+			child.parent = root;
+			nodes.add(child);
+		}
+		nodes.add(root);
+
+		List<NodeDto> dtos = transformer.applyMemoized(nodes);
+		assertEquals(4, created.get());
+		assertSame(dtos.get(3), dtos.get(0).parent);
+		assertSame(dtos.get(0).parent, dtos.get(2).parent);
+
+		// cycle
+		root.parent = nodes.get(0);
+		created.set(0);
+		NodeDto rootDto = transformer.apply(root);
+		assertEquals(2, created.get());
+		assertSame(rootDto, rootDto.parent.parent);
+		assertEquals("child0", rootDto.parent.name);
+	}
+
+	private List<String> names(List<ItemDto> dtos) {
+		return dtos.stream().map(ItemDto::getName).collect(Collectors.toList());
+	}
+
+	private List<Integer> prices(List<ItemDto> dtos) {
+		return dtos.stream().map(ItemDto::getPrice).collect(Collectors.toList());
+	}
+
 	private void verifyEquals(Item item, ItemDto dto) {
 		System.out.println(ToStringBuilder.reflectionToString(dto));
 		assertEquals(item.getName(), dto.getName());
@@ -1,5 +1,7 @@
-insert into item (id, category, name, price, date_of_purchase) values (1, 2, 'Christmas Oratorio', 1850, '2015-04-23');
-insert into item (id, category, name, price, date_of_purchase) values (2, 2, 'Creation', 1950, '2014-08-14');
-insert into item (id, category, name, price, date_of_purchase) values (3, 1, 'Elektra', 1750, '2016-02-09');
-insert into item (id, category, name, price, date_of_purchase) values (4, 3, 'Symphonie 104', 1500, '2011-12-27');
-
+insert into composer (id, name) values (1, 'Bach');
+insert into composer (id, name) values (2, 'Haydn');
+insert into composer (id, name) values (3, 'Strauss');
+insert into item (id, category, name, price, date_of_purchase, composer_id) values (1, 2, 'Christmas Oratorio', 1850, '2015-04-23', 1);
+insert into item (id, category, name, price, date_of_purchase, composer_id) values (2, 2, 'Creation', 1950, '2014-08-14', 2);
+insert into item (id, category, name, price, date_of_purchase, composer_id) values (3, 1, 'Elektra', 1750, '2016-02-09', 3);
+insert into item (id, category, name, price, date_of_purchase, composer_id) values (4, 3, 'Symphonie 104', 1500, '2011-12-27', 2);